@@ -0,0 +1,66 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * "What can I cook" ranking of a whole book for a small and a well-stocked
+ * pantry. The nested substring scan, which counts every ingredient line that
+ * mentions a pantry item and sorts the whole book, is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PantryBenchmark {
+    private static final int LIMIT = 50;
+
+    @Param({"1000", "10000", "100000"})
+    int recipes;
+
+    @Param({"eggs,flour,milk", "eggs,flour,milk,butter,sugar,salt,garlic,onion,olive oil,rice,tomatoes,basil"})
+    String pantry;
+
+    private List<Recipe> book;
+    private List<String> items;
+    private RecipeRepository repository;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = SyntheticRecipes.generate(recipes, 42);
+        items = Arrays.asList(pantry.split(","));
+        repository = new RecipeRepository(new RecipeStorage.Memory(book, Collections.emptySet()));
+        repository.search("", RecipeRepository.ALL);
+    }
+
+    @Benchmark
+    public List<PantryMatch> indexed() {
+        return repository.matchPantry(items, "", RecipeRepository.ALL, LIMIT);
+    }
+
+    @Benchmark
+    public List<Recipe> nestedScan() {
+        Map<Recipe, Double> coverage = new HashMap<>();
+        for (Recipe recipe : book) {
+            List<String> ingredients = recipe.getIngredients();
+            int have = 0;
+            for (String ing : ingredients) {
+                String line = ing.toLowerCase();
+                for (String item : items) {
+                    if (line.contains(item)) {
+                        have++;
+                        break;
+                    }
+                }
+            }
+            if (have > 0) coverage.put(recipe, (double) have / ingredients.size());
+        }
+        List<Recipe> ranked = new ArrayList<>(coverage.keySet());
+        ranked.sort((a, b) -> Double.compare(coverage.get(b), coverage.get(a)));
+        return ranked.subList(0, Math.min(LIMIT, ranked.size()));
+    }
+}
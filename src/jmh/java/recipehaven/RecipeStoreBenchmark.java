@@ -0,0 +1,94 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Compares the binary {@link RecipeStore} with the Java serialization format it
+ * replaced: file size, best-of-N save and load times for a synthetic book, and
+ * the heap a freshly loaded book keeps alive.
+ *
+ * Usage: java recipehaven.RecipeStoreBenchmark [recipes] [runs]
+ */
+public class RecipeStoreBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<Recipe> recipes = SyntheticRecipes.generate(count, 42);
+        Set<String> favoriteIds = new HashSet<>();
+        for (int i = 0; i < count; i += 10) {
+            favoriteIds.add(recipes.get(i).id);
+        }
+
+        Path dir = Files.createTempDirectory("recipe-bench");
+        Path serFile = dir.resolve("recipes_data.ser");
+        Path binFile = dir.resolve("recipes_data.bin");
+        RecipeStore store = new RecipeStore(binFile);
+
+        long serSave = Long.MAX_VALUE, serLoad = Long.MAX_VALUE;
+        long binSave = Long.MAX_VALUE, binLoad = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            try (ObjectOutputStream oos = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(serFile)))) {
+                oos.writeObject(recipes);
+                oos.writeObject(favoriteIds);
+            }
+            serSave = Math.min(serSave, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(serFile)))) {
+                if (((List<?>) ois.readObject()).size() != count) throw new IllegalStateException();
+                ois.readObject();
+            }
+            serLoad = Math.min(serLoad, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            store.save(recipes, favoriteIds);
+            binSave = Math.min(binSave, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            if (store.load().recipes.size() != count) throw new IllegalStateException();
+            binLoad = Math.min(binLoad, System.nanoTime() - start);
+        }
+
+        recipes = null;
+        long serHeap = retainedHeap(() -> {
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(serFile)))) {
+                return ois.readObject();
+            }
+        });
+        long binHeap = retainedHeap(store::load);
+
+        System.out.printf("%,d recipes, best of %d runs%n", count, runs);
+        System.out.printf("%-22s %12s %10s %10s %10s%n", "format", "size", "save ms", "load ms", "heap MB");
+        System.out.printf("%-22s %,12d %10.1f %10.1f %10.1f%n", "Java serialization",
+            Files.size(serFile), serSave / 1e6, serLoad / 1e6, serHeap / 1e6);
+        System.out.printf("%-22s %,12d %10.1f %10.1f %10.1f%n", "RecipeStore v" + RecipeStore.VERSION,
+            Files.size(binFile), binSave / 1e6, binLoad / 1e6, binHeap / 1e6);
+
+        Files.delete(serFile);
+        Files.delete(binFile);
+        Files.delete(dir);
+    }
+
+    /** Approximate heap kept reachable by the loaded value. */
+    private static long retainedHeap(Callable<Object> loader) throws Exception {
+        long before = usedHeap();
+        Object loaded = loader.call();
+        long after = usedHeap();
+        if (loaded == null) throw new IllegalStateException();
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
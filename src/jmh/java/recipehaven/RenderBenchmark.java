@@ -0,0 +1,161 @@
+package recipehaven;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import javax.swing.CellRendererPane;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The recipe list without a window: building the card, filling and painting
+ * it for one row the way JList does, the row preview text, handing a new
+ * filter result to the list, and following an edit to one recipe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderBenchmark {
+    private static final int CELL_WIDTH = 400;
+    private static final int VISIBLE_ROWS = 8;
+
+    @Param({"1000", "100000"})
+    int recipes;
+
+    private Path dir;
+    private List<Recipe> book;
+    private List<Recipe> lazyBook;
+    private List<Recipe> editedBook;
+    private Set<String> favoriteIds;
+    private ThumbnailCache thumbnails;
+    private RecipeHaven.RecipeCardRenderer renderer;
+    private RecipeRepository repository;
+    private RecipeHaven.RecipeListModel model;
+    private JList<Recipe> list;
+    private CellRendererPane rendererPane;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int cellHeight;
+    private int row;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = SyntheticRecipes.generate(recipes, 42);
+        favoriteIds = new HashSet<>();
+        for (int i = 0; i < recipes; i += 10) {
+            favoriteIds.add(book.get(i).id);
+        }
+
+        // Recipes as loadData returns them, with details left in the file
+        dir = Files.createTempDirectory("recipe-bench");
+        RecipeStore store = new RecipeStore(dir.resolve("recipes_data.bin"));
+        store.save(book, favoriteIds);
+        lazyBook = store.load().recipes;
+        editedBook = new ArrayList<>(book);
+        editedBook.set(recipes / 2, lazyBook.get(recipes / 2));
+
+        // No photos: every card paints the placeholder
+        thumbnails = new ThumbnailCache(new PhotoStore(dir.resolve("photos")), 72, 1 << 20, () -> { });
+        renderer = new RecipeHaven.RecipeCardRenderer(favoriteIds::contains, thumbnails);
+        repository = new RecipeRepository(new RecipeStorage.Memory(book, favoriteIds));
+        repository.position(book.get(0).id);
+        model = new RecipeHaven.RecipeListModel();
+        list = new JList<>(model);
+        list.setCellRenderer(renderer);
+        cellHeight = renderer.getPreferredSize().height;
+        list.setFixedCellHeight(cellHeight);
+        list.setFixedCellWidth(CELL_WIDTH);
+        model.setRecipes(book);
+
+        rendererPane = new CellRendererPane();
+        image = new BufferedImage(CELL_WIDTH, cellHeight, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        graphics.dispose();
+        Files.delete(dir.resolve("recipes_data.bin"));
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public RecipeHaven.RecipeCardRenderer createCard() {
+        return new RecipeHaven.RecipeCardRenderer(favoriteIds::contains, thumbnails);
+    }
+
+    @Benchmark
+    public void paintRow() {
+        Recipe recipe = lazyBook.get(row++ % recipes);
+        renderer.getListCellRendererComponent(list, recipe, 0, false, false);
+        SwingUtilities.paintComponent(graphics, renderer, rendererPane, 0, 0, CELL_WIDTH, cellHeight);
+    }
+
+    /** Repaint of a screenful of rows, as after a refresh or while hovering. */
+    @Benchmark
+    public void repaintVisibleRows() {
+        for (int i = 0; i < VISIBLE_ROWS; i++) {
+            renderer.getListCellRendererComponent(list, lazyBook.get(i), i, false, false);
+            SwingUtilities.paintComponent(graphics, renderer, rendererPane, 0, 0, CELL_WIDTH, cellHeight);
+        }
+    }
+
+    @Benchmark
+    public String shortIngredients() {
+        return book.get(row++ % recipes).getShortIngredients();
+    }
+
+    @Benchmark
+    public String shortIngredientsLazy() {
+        return lazyBook.get(row++ % recipes).getShortIngredients();
+    }
+
+    /** refreshRecipeDisplay: hand a new filter result to the list. */
+    @Benchmark
+    public int refreshDisplay() {
+        model.setRecipes((row++ & 1) == 0 ? book : lazyBook);
+        return list.getPreferredScrollableViewportSize().height;
+    }
+
+    /**
+     * recipeChanged on a plain list after an edit: test the recipe against the
+     * filter, find its row by book position and replace it.
+     */
+    @Benchmark
+    public int patchRow() {
+        int index = row++ % recipes;
+        Recipe recipe = (row & 1) == 0 ? book.get(index) : lazyBook.get(index);
+        changed(recipe.id, repository.position(recipe.id), recipe);
+        return list.getPreferredScrollableViewportSize().height;
+    }
+
+    /** recipeChanged on a plain list after a delete and after the recipe is back: remove its row, then insert it. */
+    @Benchmark
+    public int removeAndInsertRow() {
+        Recipe recipe = book.get(row++ % recipes);
+        int position = repository.position(recipe.id);
+        changed(recipe.id, position, null);
+        changed(recipe.id, position, recipe);
+        return list.getPreferredScrollableViewportSize().height;
+    }
+
+    /** recipeChanged on a ranked list: a new search result that differs in one row. */
+    @Benchmark
+    public int refreshAfterEdit() {
+        model.setRecipes((row++ & 1) == 0 ? book : editedBook);
+        return list.getPreferredScrollableViewportSize().height;
+    }
+
+    /** The plain-list path of recipeChanged, with no search text and every category. */
+    private void changed(String id, int position, Recipe current) {
+        boolean shown = current != null && repository.matches(current, "", RecipeRepository.ALL, false);
+        model.patch(id, position, shown ? current : null, repository::position);
+    }
+}
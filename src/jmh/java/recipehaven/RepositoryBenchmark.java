@@ -0,0 +1,107 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Searches running concurrently with edits, the way a UI, a batch job and a
+ * server would share one repository: three threads search while a fourth saves
+ * recipes and toggles favorites. Searches alone are the baseline.
+ *
+ * The single-threaded benchmarks time one edit, a delete followed by saving
+ * the recipe back, and switching to a category or favorites view, which
+ * should not grow with the size of the book beyond the recipes listed.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RepositoryBenchmark {
+    private static final String[] QUERIES = {"garlic", "#777", "cream", "pasta", "lemon juice"};
+
+    @Param({"10000", "100000"})
+    int recipes;
+
+    // One recipe in FAVORITE_EVERY is a favorite
+    private static final int FAVORITE_EVERY = 100;
+
+    private List<Recipe> book;
+    private RecipeRepository repository;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = SyntheticRecipes.generate(recipes, 42);
+        Set<String> favoriteIds = new HashSet<>();
+        for (int i = 0; i < recipes; i += FAVORITE_EVERY) {
+            favoriteIds.add(book.get(i).id);
+        }
+        repository = new RecipeRepository(new RecipeStorage.Memory(book, favoriteIds));
+        repository.search("", RecipeRepository.ALL);
+    }
+
+    /** Per-thread position in the query and edit sequences. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("searchOnly")
+    @GroupThreads(3)
+    public List<Recipe> search(Cursor cursor) {
+        return repository.search(QUERIES[cursor.next++ % QUERIES.length], RecipeRepository.ALL);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<Recipe> searchWhileEditing(Cursor cursor) {
+        return repository.search(QUERIES[cursor.next++ % QUERIES.length], RecipeRepository.ALL);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void edit(Cursor cursor) {
+        int n = cursor.next++;
+        Recipe original = book.get(n % recipes);
+        if ((n & 1) == 0) {
+            repository.save(new Recipe(original.id, original.name + " (edited)", original.category,
+                original.getIngredients(), original.getSteps()));
+        } else {
+            repository.setFavorite(original.id, (n & 2) == 0);
+        }
+    }
+
+    @Benchmark
+    @Group("editOne")
+    public void editOne(Cursor cursor) {
+        Recipe original = book.get(cursor.next++ % recipes);
+        repository.save(new Recipe(original.id, original.name + " (edited)", original.category,
+            original.getIngredients(), original.getSteps()));
+    }
+
+    @Benchmark
+    @Group("deleteAndSaveBack")
+    public void deleteAndSaveBack(Cursor cursor) {
+        Recipe original = book.get(cursor.next++ % recipes);
+        repository.delete(original.id);
+        repository.save(original);
+    }
+
+    @Benchmark
+    @Group("categoryView")
+    public List<Recipe> categoryView(Cursor cursor) {
+        return repository.search("", SyntheticRecipes.CATEGORIES[cursor.next++ % SyntheticRecipes.CATEGORIES.length]);
+    }
+
+    @Benchmark
+    @Group("favoritesView")
+    public List<Recipe> favoritesView() {
+        return repository.search("", RecipeRepository.FAVORITES);
+    }
+}
@@ -0,0 +1,79 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Search as filterRecipes runs it through the repository, on books of several
+ * sizes and for queries from "matches almost everything" to "matches nothing".
+ * The linear scan is the filter the index replaced and serves as the baseline.
+ * Ranked search, as the list runs it for typed text, returns the best
+ * {@value #RANKED_RESULTS} within the window's latency budget; "choclate"
+ * only matches through typo tolerance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchBenchmark {
+    private static final int RANKED_RESULTS = 50;
+    private static final long BUDGET_MILLIS = 100;
+
+    @Param({"1000", "10000", "100000"})
+    int recipes;
+
+    // Broad, medium, narrow, empty and misspelled
+    @Param({"s", "garlic", "#777", "saffron", "choclate"})
+    String query;
+
+    @Param({"All", "Dessert"})
+    String filter;
+
+    private List<Recipe> book;
+    private RecipeRepository repository;
+    private BiPredicate<String, String> categoryMatch;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = SyntheticRecipes.generate(recipes, 42);
+        repository = new RecipeRepository(new RecipeStorage.Memory(book, Collections.emptySet()));
+        repository.search("", RecipeRepository.ALL);
+        categoryMatch = RecipeRepository.categoryFilter(filter, Collections.emptySet());
+    }
+
+    @Benchmark
+    public List<Recipe> indexed() {
+        return repository.search(query, filter);
+    }
+
+    @Benchmark
+    public List<Recipe> ranked() {
+        return repository.rankedSearch(query, filter, RANKED_RESULTS, BUDGET_MILLIS);
+    }
+
+    @Benchmark
+    public List<Recipe> linearScan() {
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : book) {
+            boolean matches = recipe.name.toLowerCase().contains(query) ||
+                            recipe.category.toLowerCase().contains(query);
+
+            if (!matches) {
+                for (String ing : recipe.getIngredients()) {
+                    if (ing.toLowerCase().contains(query)) {
+                        matches = true;
+                        break;
+                    }
+                }
+            }
+
+            if (matches && categoryMatch.test(recipe.id, recipe.category)) result.add(recipe);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,286 @@
+package recipehaven;
+
+import java.util.*;
+
+/**
+ * Correctness harness for {@link RecipeIndex}. Builds randomized corpora,
+ * applies random add/edit/delete mutations and compares every index search
+ * with the plain linear contains() scan that filterRecipes used to run, and
+ * every ingredient and pantry query with a scan that parses each ingredient
+ * line. Ranked, typo-tolerant queries must match the recipes a token-by-token
+ * scan finds, and their top results must lead the full ranking.
+ *
+ * Usage: java recipehaven.SearchIndexCheck [seed] [rounds]
+ */
+public class SearchIndexCheck {
+    // Small alphabet with mixed case, punctuation and odd whitespace so that
+    // matches cross token boundaries and lowercasing matters
+    private static final String[] WORDS = {
+        "tomato", "Tomatoes", "TOM", "mat", "oes", "flour", "2 cups", "1/2", "cup,", "sugar",
+        "olive", "oil", "Olive-Oil", "salt", "pepper", "İstanbul", "crème", "fraîche", "a", "ab"
+    };
+    private static final String[] SEPARATORS = {" ", "  ", "\t", " - ", ", ", ""};
+    private static final String[] CATEGORIES = {
+        "Breakfast", "Lunch", "Dinner", "Dessert", "Snack", "Beverage", "Appetizer"
+    };
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Random random = new Random(seed);
+
+        int queries = 0;
+        for (int round = 0; round < rounds; round++) {
+            List<Recipe> recipes = new ArrayList<>();
+            int size = random.nextInt(200);
+            for (int i = 0; i < size; i++) {
+                recipes.add(randomRecipe(random));
+            }
+            RecipeIndex index = new RecipeIndex();
+            index.rebuild(recipes, Collections.emptySet());
+
+            for (int step = 0; step < 50; step++) {
+                mutate(random, recipes, index);
+                for (int q = 0; q < 10; q++) {
+                    String searchText = randomQuery(random, recipes).toLowerCase().trim();
+                    if (searchText.isEmpty()) continue;
+                    queries++;
+
+                    List<Recipe> expected = linearScan(recipes, searchText);
+                    List<Recipe> actual = index.search(searchText);
+                    if (!expected.equals(actual)) {
+                        System.err.println("Mismatch for seed " + seed + ", round " + round
+                            + ", query \"" + searchText + "\": expected " + expected.size()
+                            + " recipes, index returned " + actual.size());
+                        System.exit(1);
+                    }
+                }
+                for (int q = 0; q < 5; q++) {
+                    int[] ingredientIds = randomIngredients(random, recipes);
+                    queries++;
+
+                    List<Recipe> expected = ingredientScan(recipes, ingredientIds);
+                    List<Recipe> actual = index.withIngredients(ingredientIds, null);
+                    if (!expected.equals(actual)) {
+                        System.err.println("Mismatch for seed " + seed + ", round " + round
+                            + ", ingredients " + Arrays.toString(ingredientIds) + ": expected "
+                            + expected.size() + " recipes, index returned " + actual.size());
+                        System.exit(1);
+                    }
+                }
+                for (int q = 0; q < 3; q++) {
+                    String searchText = typo(random, randomQuery(random, recipes)).toLowerCase().trim();
+                    queries++;
+
+                    Set<Recipe> expected = new HashSet<>(fuzzyScan(recipes, searchText));
+                    List<Recipe> all = index.rank(searchText, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+                    int limit = 1 + random.nextInt(10);
+                    List<Recipe> top = index.rank(searchText, null, limit, Long.MAX_VALUE);
+                    boolean sameSet = searchText.isEmpty() ? all.equals(recipes)
+                        : expected.equals(new HashSet<>(all)) && all.size() == expected.size();
+                    if (!sameSet || !top.equals(all.subList(0, Math.min(limit, all.size())))) {
+                        System.err.println("Mismatch for seed " + seed + ", round " + round
+                            + ", ranked query \"" + searchText + "\": expected " + expected.size()
+                            + " recipes, index ranked " + all.size() + ", top " + limit + " consistent: "
+                            + top.equals(all.subList(0, Math.min(limit, all.size()))));
+                        System.exit(1);
+                    }
+                }
+                for (int q = 0; q < 3; q++) {
+                    int[] pantry = randomIngredients(random, recipes);
+                    int limit = 1 + random.nextInt(20);
+                    queries++;
+
+                    List<String> expected = pantryScan(recipes, pantry, limit);
+                    List<String> actual = new ArrayList<>();
+                    for (PantryMatch match : index.matchPantry(pantry, limit, null)) {
+                        actual.add(describe(match.recipe, match.have, match.total, match.missing));
+                    }
+                    if (!expected.equals(actual)) {
+                        System.err.println("Mismatch for seed " + seed + ", round " + round
+                            + ", pantry " + Arrays.toString(pantry) + ": expected " + expected
+                            + ", index returned " + actual);
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+        System.out.println("OK: " + queries + " queries over " + rounds + " corpora (seed " + seed + ")");
+    }
+
+    /** The search filter as filterRecipes evaluated it before the index existed. */
+    private static List<Recipe> linearScan(List<Recipe> recipes, String searchText) {
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            boolean matches = recipe.name.toLowerCase().contains(searchText) ||
+                            recipe.category.toLowerCase().contains(searchText);
+
+            if (!matches) {
+                for (String ing : recipe.getIngredients()) {
+                    if (ing.toLowerCase().contains(searchText)) {
+                        matches = true;
+                        break;
+                    }
+                }
+            }
+
+            if (matches) result.add(recipe);
+        }
+        return result;
+    }
+
+    /** Recipes with a line parsing to each of the ingredient ids. */
+    private static List<Recipe> ingredientScan(List<Recipe> recipes, int[] ingredientIds) {
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            Set<Integer> used = new HashSet<>();
+            for (String ing : recipe.getIngredients()) {
+                used.add(Ingredient.parse(ing.toLowerCase()).id);
+            }
+            boolean matches = true;
+            for (int id : ingredientIds) {
+                matches &= used.contains(id);
+            }
+            if (matches) result.add(recipe);
+        }
+        return result;
+    }
+
+    /** Recipes where every piece of the search text matches some token, typos allowed. */
+    private static List<Recipe> fuzzyScan(List<Recipe> recipes, String searchText) {
+        List<String> pieces = new ArrayList<>();
+        RecipeIndex.tokenize(searchText, pieces);
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            List<String> tokens = new ArrayList<>();
+            RecipeIndex.tokenize(recipe.name.toLowerCase(), tokens);
+            RecipeIndex.tokenize(recipe.category.toLowerCase(), tokens);
+            for (String ing : recipe.getIngredients()) {
+                RecipeIndex.tokenize(ing.toLowerCase(), tokens);
+            }
+            boolean matches = true;
+            for (String piece : pieces) {
+                boolean found = false;
+                for (String token : tokens) {
+                    found |= RecipeIndex.termMatch(piece, token) > 0;
+                }
+                matches &= found;
+            }
+            if (matches) result.add(recipe);
+        }
+        return result;
+    }
+
+    /** Usually misspells the query by inserting, dropping or changing a character. */
+    private static String typo(Random random, String query) {
+        if (query.isEmpty() || random.nextInt(4) == 0) return query;
+        int at = random.nextInt(query.length());
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0: return query.substring(0, at) + c + query.substring(at);
+            case 1: return query.substring(0, at) + query.substring(at + 1);
+            default: return query.substring(0, at) + c + query.substring(at + 1);
+        }
+    }
+
+    /** The best pantry matches found by parsing every recipe and sorting them all. */
+    private static List<String> pantryScan(List<Recipe> recipes, int[] pantry, int limit) {
+        Set<Integer> onHand = new HashSet<>();
+        for (int id : pantry) {
+            onHand.add(id);
+        }
+        List<Object[]> scored = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            SortedSet<Integer> used = new TreeSet<>();
+            for (String ing : recipe.getIngredients()) {
+                used.add(Ingredient.parse(ing.toLowerCase()).id);
+            }
+            int have = 0;
+            List<String> missing = new ArrayList<>();
+            for (int id : used) {
+                if (onHand.contains(id)) {
+                    have++;
+                } else {
+                    missing.add(IngredientDictionary.name(id));
+                }
+            }
+            if (have > 0) scored.add(new Object[] {describe(recipe, have, used.size(), missing), have, used.size()});
+        }
+        // Stable, so ties stay in book order
+        scored.sort((a, b) -> PantryMatch.compareCoverage((int) a[1], (int) a[2], (int) b[1], (int) b[2]));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, scored.size()); i++) {
+            result.add((String) scored.get(i)[0]);
+        }
+        return result;
+    }
+
+    private static String describe(Recipe recipe, int have, int total, List<String> missing) {
+        return recipe.id + " " + have + "/" + total + " missing " + missing;
+    }
+
+    /** One to three ingredients of existing recipes, or an id no line parses to. */
+    private static int[] randomIngredients(Random random, List<Recipe> recipes) {
+        int[] ids = new int[1 + random.nextInt(3)];
+        for (int i = 0; i < ids.length; i++) {
+            if (recipes.isEmpty() || random.nextInt(10) == 0) {
+                ids[i] = IngredientDictionary.intern("no such ingredient");
+            } else {
+                List<String> ingredients = recipes.get(random.nextInt(recipes.size())).getIngredients();
+                ids[i] = Ingredient.parse(ingredients.get(random.nextInt(ingredients.size()))).id;
+            }
+        }
+        return ids;
+    }
+
+    private static void mutate(Random random, List<Recipe> recipes, RecipeIndex index) {
+        int op = random.nextInt(3);
+        if (op == 0 || recipes.isEmpty()) {
+            Recipe recipe = randomRecipe(random);
+            recipes.add(recipe);
+            index.add(recipe);
+        } else if (op == 1) {
+            Recipe recipe = recipes.get(random.nextInt(recipes.size()));
+            Recipe edited = randomRecipe(random);
+            recipe.name = edited.name;
+            recipe.category = edited.category;
+            recipe.setDetails(edited.getIngredients(), edited.getSteps());
+            index.update(recipe);
+        } else {
+            Recipe recipe = recipes.remove(random.nextInt(recipes.size()));
+            index.remove(recipe);
+        }
+    }
+
+    private static Recipe randomRecipe(Random random) {
+        List<String> ingredients = new ArrayList<>();
+        int count = 1 + random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            ingredients.add(randomText(random, 1 + random.nextInt(4)));
+        }
+        return new Recipe(randomText(random, 1 + random.nextInt(3)),
+            CATEGORIES[random.nextInt(CATEGORIES.length)], ingredients, "steps");
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String randomQuery(Random random, List<Recipe> recipes) {
+        if (recipes.isEmpty() || random.nextInt(4) == 0) {
+            return randomText(random, 1 + random.nextInt(2));
+        }
+        // Arbitrary substring of an existing field, often spanning whitespace
+        Recipe recipe = recipes.get(random.nextInt(recipes.size()));
+        String field = random.nextBoolean() ? recipe.name
+            : recipe.getIngredients().get(random.nextInt(recipe.getIngredients().size()));
+        int start = random.nextInt(field.length());
+        int end = start + 1 + random.nextInt(field.length() - start);
+        return field.substring(start, end);
+    }
+}
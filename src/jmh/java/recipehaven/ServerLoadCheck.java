@@ -0,0 +1,167 @@
+package recipehaven;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Load test of server mode: starts a {@link RecipeServer} on a free localhost
+ * port over a synthetic book, then has client threads send a mix of searches,
+ * lookups, favorite changes and edits for a fixed time, each client as its own
+ * user. Reports the throughput and the latency percentiles per kind of request.
+ *
+ * Usage: {@code [recipes] [clients] [seconds] [write percent]}. Results include
+ * the clients' own work, since they run on the same machine.
+ */
+public class ServerLoadCheck {
+    private static final String[] QUERIES = {"garlic", "#777", "cream", "pasta", "lemon juice", "choclate"};
+    private static final String[] KINDS = {"search", "ranked", "get", "favorite", "edit"};
+    private static final int WARMUP_SECONDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int recipes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        List<Recipe> book = SyntheticRecipes.generate(recipes, 42);
+        RecipeRepository repository = new RecipeRepository(new RecipeStorage.Memory(book, Collections.emptySet()));
+        repository.search("", RecipeRepository.ALL);
+        Path favoritesDir = Files.createTempDirectory("server-load");
+        RecipeServer server = new RecipeServer(repository, new UserFavorites(favoritesDir), 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.port();
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            run(pool, base, book, clients, WARMUP_SECONDS, writePercent);
+            List<long[][]> results = run(pool, base, book, clients, seconds, writePercent);
+
+            System.out.printf("%d recipes, %d clients, %d s, %d%% writes, %d cores%n", recipes, clients, seconds,
+                writePercent, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-9s %9s %10s %9s %9s %9s%n", "request", "count", "req/s", "p50 ms", "p99 ms", "max ms");
+            long[] all = new long[0];
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                long[] latencies = new long[0];
+                for (long[][] client : results) {
+                    latencies = concat(latencies, client[kind]);
+                }
+                all = concat(all, latencies);
+                report(KINDS[kind], latencies, seconds);
+            }
+            report("all", all, seconds);
+        } finally {
+            pool.shutdownNow();
+            server.close();
+            for (Path file : (Iterable<Path>) Files.list(favoritesDir)::iterator) {
+                Files.delete(file);
+            }
+            Files.delete(favoritesDir);
+        }
+    }
+
+    /** Runs every client for the given time; returns each client's latencies by kind, in nanoseconds. */
+    private static List<long[][]> run(ExecutorService pool, String base, List<Recipe> book, int clients,
+                                      int seconds, int writePercent) throws Exception {
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[][]>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            futures.add(pool.submit(() -> client(base, book, "cook-" + client, client, end, writePercent)));
+        }
+        List<long[][]> results = new ArrayList<>();
+        for (Future<long[][]> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private static long[][] client(String base, List<Recipe> book, String user, long seed, long end,
+                                   int writePercent) throws IOException {
+        Random random = new Random(seed);
+        long[][] latencies = new long[KINDS.length][1024];
+        int[] counts = new int[KINDS.length];
+        while (System.nanoTime() < end) {
+            Recipe recipe = book.get(random.nextInt(book.size()));
+            String id = URLEncoder.encode(recipe.id, "UTF-8");
+            String query = URLEncoder.encode(QUERIES[random.nextInt(QUERIES.length)], "UTF-8");
+            String category = URLEncoder.encode(
+                random.nextInt(4) == 0 ? RecipeRepository.FAVORITES : RecipeRepository.ALL, "UTF-8");
+            int kind;
+            long start = System.nanoTime();
+            int roll = random.nextInt(100);
+            if (roll < writePercent / 2) {
+                kind = 4;
+                String body = "{\"name\":\"" + recipe.name + " (edited)\",\"category\":\"" + recipe.category
+                    + "\",\"ingredients\":[\"1 cup water\"],\"steps\":\"Stir.\"}";
+                request("PUT", base + "/recipes/" + id, user, body);
+            } else if (roll < writePercent) {
+                kind = 3;
+                request(random.nextBoolean() ? "PUT" : "DELETE", base + "/favorites/" + id, user, null);
+            } else if (roll < 50) {
+                kind = 0;
+                request("GET", base + "/recipes?q=" + query + "&category=" + category + "&limit=20", user, null);
+            } else if (roll < 75) {
+                kind = 1;
+                request("GET", base + "/recipes?q=" + query + "&ranked=true&limit=20", user, null);
+            } else {
+                kind = 2;
+                request("GET", base + "/recipes/" + id, user, null);
+            }
+            long took = System.nanoTime() - start;
+            if (counts[kind] == latencies[kind].length) {
+                latencies[kind] = Arrays.copyOf(latencies[kind], counts[kind] * 2);
+            }
+            latencies[kind][counts[kind]++] = took;
+        }
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            latencies[kind] = Arrays.copyOf(latencies[kind], counts[kind]);
+        }
+        return latencies;
+    }
+
+    /** Sends one request and reads the whole response, so the connection is reused. */
+    private static void request(String method, String url, String user, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty(RecipeServer.USER_HEADER, user);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        if (status >= 300) throw new IOException(method + " " + url + ": " + status);
+        if (status == 204) return;
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) > 0) {
+                // Drain
+            }
+        }
+    }
+
+    private static void report(String kind, long[] latencies, int seconds) {
+        if (latencies.length == 0) return;
+        Arrays.sort(latencies);
+        System.out.printf("%-9s %9d %10.0f %9.2f %9.2f %9.2f%n", kind, latencies.length,
+            (double) latencies.length / seconds, percentile(latencies, 0.50) / 1e6,
+            percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package recipehaven;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Making the shopping list for a week's plan and for a catering plan:
+ * {@code cold} parses every planned recipe, {@code afterOneEdit} makes the
+ * list again after one planned recipe changed, which parses that recipe only,
+ * and {@code sequentialUncached} is a single-threaded loop that parses every
+ * line and adds up amounts by name and unit, without unit conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ShoppingListBenchmark {
+    @Param({"21", "500"})
+    int planned;
+
+    private List<ShoppingList.Planned> plan;
+    private ShoppingList warm;
+    private int edits;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Recipe> book = SyntheticRecipes.generate(10_000, 42);
+        plan = new ArrayList<>(planned);
+        for (int i = 0; i < planned; i++) {
+            plan.add(new ShoppingList.Planned(book.get(random.nextInt(book.size())), 1 + random.nextInt(40)));
+        }
+        warm = new ShoppingList();
+        warm.generate(plan);
+    }
+
+    @Benchmark
+    public Map<String, List<ShoppingList.Item>> cold() {
+        return new ShoppingList().generate(plan);
+    }
+
+    @Benchmark
+    public Map<String, List<ShoppingList.Item>> afterOneEdit() {
+        // An edit saves a new version of the recipe under the same id
+        int at = edits++ % plan.size();
+        ShoppingList.Planned old = plan.get(at);
+        Recipe edited = new Recipe(old.recipe.id, old.recipe.name, old.recipe.category,
+            old.recipe.getIngredients(), old.recipe.getSteps());
+        plan.set(at, new ShoppingList.Planned(edited, old.scale));
+        return warm.generate(plan);
+    }
+
+    @Benchmark
+    public Map<String, Double> sequentialUncached() {
+        Map<String, Double> totals = new HashMap<>();
+        for (ShoppingList.Planned entry : plan) {
+            for (String line : entry.recipe.getIngredients()) {
+                Ingredient ingredient = Ingredient.parse(line);
+                double quantity = Double.isNaN(ingredient.quantity) ? 0 : ingredient.quantity;
+                totals.merge(ingredient.name() + "|" + ingredient.unit, quantity * entry.scale, Double::sum);
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,110 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Checks that compacting a {@link RecipeJournal} never replaces the snapshot
+ * file that lazily loaded recipes still read from, as Windows refuses to.
+ * Each round loads the journal, keeps one recipe unloaded, edits others and
+ * compacts, then checks that the mapped file was left alone or deleted but
+ * never renamed over, that the unloaded recipe still reads its details, and
+ * that loading again gives the new snapshot, settled back under the plain
+ * name with every older generation gone.
+ *
+ * Usage: java recipehaven.SnapshotCheck [recipes] [rounds]
+ */
+public class SnapshotCheck {
+    public static void main(String[] args) throws IOException {
+        int recipes = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path dir = Files.createTempDirectory("snapshot-check");
+        Path dataFile = dir.resolve("recipes_data.bin");
+        Path logFile = dir.resolve("recipes_data.log");
+        List<Recipe> book = SyntheticRecipes.generate(recipes, 42);
+        Map<String, String> expectedSteps = new HashMap<>();
+        for (Recipe recipe : book) {
+            expectedSteps.put(recipe.id, recipe.getSteps());
+        }
+        RecipeJournal first = new RecipeJournal(dataFile, logFile);
+        first.saveSnapshot(book, Collections.emptySet());
+        first.close();
+
+        Random random = new Random(7);
+        for (int round = 0; round < rounds; round++) {
+            RecipeJournal journal = new RecipeJournal(dataFile, logFile);
+            List<Recipe> loaded = journal.load().recipes;
+            check(loaded.size() == recipes, "loaded " + loaded.size() + " recipes");
+            check(snapshotFiles(dir).equals(Collections.singletonList(dataFile.getFileName().toString())),
+                "snapshots after load: " + snapshotFiles(dir));
+            Object mappedKey = fileKey(dataFile);
+
+            // Kept unloaded: read through readSteps only, which does not keep the details
+            Recipe unloaded = loaded.get(random.nextInt(loaded.size()));
+            List<Recipe> next = new ArrayList<>(loaded);
+            for (int i = 0; i < 20; i++) {
+                int at = random.nextInt(next.size());
+                Recipe old = next.get(at);
+                if (old == unloaded) continue;
+                String steps = "Round " + round + " edit " + i;
+                Recipe edited = new Recipe(old.id, old.name, old.category, old.readIngredients(), steps);
+                next.set(at, edited);
+                expectedSteps.put(old.id, steps);
+                journal.recordPut(edited);
+            }
+            journal.sync();
+
+            List<IOException> errors = new ArrayList<>();
+            journal.compact(new RecipeStore.Contents(next, Collections.emptySet()), errors::add);
+            journal.close();
+            check(errors.isEmpty(), "compaction failed: " + errors);
+            check(!Files.exists(logFile.resolveSibling(logFile.getFileName() + ".1")), "archived log left");
+            check(!Files.exists(dataFile) || Objects.equals(fileKey(dataFile), mappedKey),
+                "the mapped snapshot was replaced");
+            check(unloaded.readSteps().equals(expectedSteps.get(unloaded.id)), "unloaded recipe lost its steps");
+        }
+
+        // An older snapshot left by a crash between a save and its cleanup goes on the next load
+        // Where the mapping kept the old file from being deleted it is already that snapshot
+        if (!Files.exists(dataFile)) Files.write(dataFile, new byte[] {1, 2, 3});
+        RecipeJournal journal = new RecipeJournal(dataFile, logFile);
+        List<Recipe> loaded = journal.load().recipes;
+        journal.close();
+        check(snapshotFiles(dir).equals(Collections.singletonList(dataFile.getFileName().toString())),
+            "snapshots after the last load: " + snapshotFiles(dir));
+        for (Recipe recipe : loaded) {
+            check(recipe.getSteps().equals(expectedSteps.get(recipe.id)), "wrong steps for " + recipe.id);
+        }
+
+        for (String name : snapshotFiles(dir)) {
+            Files.delete(dir.resolve(name));
+        }
+        Files.deleteIfExists(logFile);
+        Files.delete(dir);
+        System.out.println("OK: " + rounds + " compactions over " + recipes + " recipes");
+    }
+
+    private static List<String> snapshotFiles(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "recipes_data.bin*")) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    private static void check(boolean ok, String problem) {
+        if (ok) return;
+        System.err.println("FAILED: " + problem);
+        System.exit(1);
+    }
+}
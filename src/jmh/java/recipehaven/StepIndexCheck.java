@@ -0,0 +1,167 @@
+package recipehaven;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Correctness and size harness for {@link StepIndex}. Builds randomized
+ * corpora, applies enough random add/edit/delete mutations to re-encode the
+ * posting lists several times, and compares every steps search of the
+ * {@link RecipeIndex} with a scan that rejoins each recipe's words, then
+ * checks every returned recipe's snippet. Finally indexes the steps of a
+ * synthetic book and reports the posting lists' size against the steps text.
+ *
+ * Usage: java recipehaven.StepIndexCheck [seed] [rounds] [book size]
+ */
+public class StepIndexCheck {
+    // Few words, so phrases repeat; mixed case and punctuation between them
+    private static final String[] WORDS = {
+        "Stir", "stir", "stirring", "the", "sauce", "SAUCE", "20", "minutes", "min", "oven", "180C",
+        "crème", "fraîche", "a", "ab"
+    };
+    private static final String[] SEPARATORS = {" ", "  ", "\n", ", ", ". ", "-", "("};
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int bookSize = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        Random random = new Random(seed);
+
+        int queries = 0;
+        for (int round = 0; round < rounds; round++) {
+            List<Recipe> recipes = new ArrayList<>();
+            int size = random.nextInt(1000);
+            for (int i = 0; i < size; i++) {
+                recipes.add(randomRecipe(random));
+            }
+            RecipeIndex index = new RecipeIndex();
+            index.rebuild(recipes, Collections.emptySet());
+            // Some rounds index the steps after the first changes, some before
+            if (random.nextBoolean()) index.indexSteps();
+
+            for (int step = 0; step < 3000; step++) {
+                mutate(random, recipes, index);
+                if (step == 100) index.indexSteps();
+                if (step % 50 != 0 || step < 100) continue;
+                if (random.nextInt(20) == 0) index.rebuild(recipes, Collections.emptySet());
+
+                for (int q = 0; q < 10; q++) {
+                    String query = randomQuery(random, recipes).toLowerCase().trim();
+                    if (query.isEmpty()) continue;
+                    queries++;
+
+                    List<Recipe> expected = scan(recipes, query);
+                    List<Recipe> actual = index.searchWithSteps(query, null, Integer.MAX_VALUE);
+                    if (!expected.equals(actual)) {
+                        fail(seed, round, query, "expected " + expected.size() + " recipes, index returned "
+                            + actual.size());
+                    }
+                    for (Recipe recipe : actual) {
+                        checkSnippet(seed, round, query, recipe);
+                    }
+                }
+            }
+        }
+        System.out.println("OK: " + queries + " queries over " + rounds + " corpora (seed " + seed + ")");
+
+        List<Recipe> book = SyntheticRecipes.generate(bookSize, 42);
+        long textBytes = 0;
+        for (Recipe recipe : book) {
+            textBytes += recipe.getSteps().getBytes(StandardCharsets.UTF_8).length;
+        }
+        RecipeIndex index = new RecipeIndex();
+        index.rebuild(book, Collections.emptySet());
+        long start = System.nanoTime();
+        index.indexSteps();
+        long took = System.nanoTime() - start;
+        System.out.printf("%d recipes: steps %.1f MB, postings %.1f MB (%.0f%%), %d words, indexed in %d ms%n",
+            bookSize, textBytes / 1e6, index.stepPostingBytes() / 1e6, 100.0 * index.stepPostingBytes() / textBytes,
+            index.stepTermCount(), took / 1_000_000);
+    }
+
+    /**
+     * Recipes whose fields contain the query, or whose steps contain its words
+     * in order, the last as a prefix: with words rejoined by single spaces,
+     * that is the rejoined query following a space.
+     */
+    private static List<Recipe> scan(List<Recipe> recipes, String query) {
+        String phrase = " " + String.join(" ", StepIndex.words(query));
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            boolean matches = recipe.name.toLowerCase().contains(query)
+                || recipe.category.toLowerCase().contains(query);
+            for (String ing : recipe.getIngredients()) {
+                matches |= ing.toLowerCase().contains(query);
+            }
+            if (!phrase.trim().isEmpty()) {
+                matches |= (" " + String.join(" ", StepIndex.words(recipe.getSteps()))).contains(phrase);
+            }
+            if (matches) result.add(recipe);
+        }
+        return result;
+    }
+
+    /** A snippet, when there is one, is a piece of the steps whose highlights match the query's words. */
+    private static void checkSnippet(long seed, int round, String query, Recipe recipe) {
+        StepIndex.Snippet snippet = StepIndex.snippet(recipe.getSteps(), query, 20);
+        if (snippet == null) return;
+        if (!recipe.getSteps().contains(snippet.text) || snippet.highlights.isEmpty()) {
+            fail(seed, round, query, "bad snippet \"" + snippet.text + "\"");
+        }
+        String phrase = String.join(" ", StepIndex.words(query));
+        for (int[] highlight : snippet.highlights) {
+            String words = String.join(" ", StepIndex.words(snippet.text.substring(highlight[0], highlight[1])));
+            if (!words.startsWith(phrase)) {
+                fail(seed, round, query, "highlight \"" + words + "\" in \"" + snippet.text + "\"");
+            }
+        }
+    }
+
+    private static void fail(long seed, int round, String query, String problem) {
+        System.err.println("Mismatch for seed " + seed + ", round " + round + ", query \"" + query + "\": "
+            + problem);
+        System.exit(1);
+    }
+
+    private static void mutate(Random random, List<Recipe> recipes, RecipeIndex index) {
+        int op = random.nextInt(4);
+        if (op == 0 || recipes.isEmpty()) {
+            Recipe recipe = randomRecipe(random);
+            recipes.add(recipe);
+            index.add(recipe);
+        } else if (op < 3) {
+            Recipe recipe = recipes.get(random.nextInt(recipes.size()));
+            recipe.setDetails(recipe.getIngredients(), randomText(random, random.nextInt(30)));
+            index.update(recipe);
+        } else {
+            Recipe recipe = recipes.remove(random.nextInt(recipes.size()));
+            index.remove(recipe);
+        }
+    }
+
+    private static Recipe randomRecipe(Random random) {
+        return new Recipe("Dish " + random.nextInt(1000), "Dinner",
+            Collections.singletonList(random.nextInt(5) + " cups water"), randomText(random, random.nextInt(30)));
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /** One to three words, or a piece of some recipe's steps cut at arbitrary characters. */
+    private static String randomQuery(Random random, List<Recipe> recipes) {
+        if (recipes.isEmpty() || random.nextInt(3) == 0) {
+            return randomText(random, 1 + random.nextInt(3));
+        }
+        String steps = recipes.get(random.nextInt(recipes.size())).getSteps();
+        if (steps.isEmpty()) return "";
+        int start = random.nextInt(steps.length());
+        int end = start + 1 + random.nextInt(Math.min(25, steps.length() - start));
+        return steps.substring(start, end);
+    }
+}
@@ -0,0 +1,70 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Searching with steps included: the positional step index against the
+ * single-threaded loop over every recipe's fields and steps that it replaced,
+ * for a common word, a phrase, an unfinished phrase and a word that never
+ * occurs. {@code snippets} is the work the list then does for the ten cards
+ * on screen. {@link StepIndexCheck} reports the index's size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StepSearchBenchmark {
+    private static final int VISIBLE_ROWS = 10;
+
+    @Param({"10000", "100000"})
+    int recipes;
+
+    @Param({"simmer", "20 minutes", "golden br", "saffron"})
+    String query;
+
+    private List<Recipe> book;
+    private RecipeRepository repository;
+    private List<Recipe> visible;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = SyntheticRecipes.generate(recipes, 42);
+        repository = new RecipeRepository(new RecipeStorage.Memory(book, Collections.emptySet()));
+        List<Recipe> matches = repository.searchWithSteps(query, RecipeRepository.ALL, Integer.MAX_VALUE);
+        visible = matches.subList(0, Math.min(VISIBLE_ROWS, matches.size()));
+    }
+
+    @Benchmark
+    public List<Recipe> indexed() {
+        return repository.searchWithSteps(query, RecipeRepository.ALL, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Recipe> linearScan() {
+        List<Recipe> result = new ArrayList<>();
+        for (Recipe recipe : book) {
+            boolean matches = recipe.name.toLowerCase().contains(query)
+                || recipe.category.toLowerCase().contains(query);
+            for (String ingredient : recipe.readIngredients()) {
+                if (matches) break;
+                matches = ingredient.toLowerCase().contains(query);
+            }
+            if (matches || recipe.readSteps().toLowerCase().contains(query)) result.add(recipe);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<StepIndex.Snippet> snippets() {
+        List<StepIndex.Snippet> snippets = new ArrayList<>(visible.size());
+        for (Recipe recipe : visible) {
+            snippets.add(StepIndex.snippet(recipe.readSteps(), query, 40));
+        }
+        return snippets;
+    }
+}
@@ -0,0 +1,92 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The loadData/saveData paths: writing and reading a whole book, opening every
+ * recipe of a lazily loaded one, and persisting a single edit through the
+ * journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StoreBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int recipes;
+
+    private Path dir;
+    private List<Recipe> book;
+    private Set<String> favoriteIds;
+    private RecipeStore store;
+    private RecipeJournal journal;
+    private int edits;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("recipe-bench");
+        book = SyntheticRecipes.generate(recipes, 42);
+        favoriteIds = new HashSet<>();
+        for (int i = 0; i < recipes; i += 10) {
+            favoriteIds.add(book.get(i).id);
+        }
+        store = new RecipeStore(dir.resolve("recipes_data.bin"));
+        store.save(book, favoriteIds);
+        journal = new RecipeJournal(dir.resolve("journal.bin"), dir.resolve("journal.log"));
+        journal.saveSnapshot(book, favoriteIds);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        store.save(book, favoriteIds);
+    }
+
+    @Benchmark
+    public RecipeStore.Contents load() throws IOException {
+        return store.load();
+    }
+
+    /** Load followed by what the list needs to draw every row. */
+    @Benchmark
+    public void loadAndListAll(Blackhole bh) throws IOException {
+        for (Recipe recipe : store.load().recipes) {
+            bh.consume(recipe.getShortIngredients());
+        }
+    }
+
+    /** Load followed by opening every recipe, the worst case for lazy details. */
+    @Benchmark
+    public void loadAndOpenAll(Blackhole bh) throws IOException {
+        for (Recipe recipe : store.load().recipes) {
+            bh.consume(recipe.getIngredients());
+            bh.consume(recipe.getSteps());
+        }
+    }
+
+    /** One saved edit as the persistence writer issues it: append and fsync. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void journalEdit() throws IOException {
+        Recipe recipe = book.get(edits++ % recipes);
+        journal.recordPut(recipe);
+        journal.sync();
+    }
+}
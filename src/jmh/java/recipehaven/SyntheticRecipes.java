@@ -0,0 +1,76 @@
+package recipehaven;
+
+import java.util.*;
+
+/**
+ * Generates reproducible, realistic-looking recipe books for benchmarks:
+ * ingredient lines are drawn from a shared vocabulary so they repeat across
+ * recipes the way real cookbooks do, and steps are a few sentences long.
+ */
+class SyntheticRecipes {
+    static final String[] CATEGORIES = {
+        "Breakfast", "Lunch", "Dinner", "Dessert", "Snack", "Beverage", "Appetizer"
+    };
+    private static final String[] QUANTITIES = {"1", "2", "3", "1/2", "1/4", "3/4", "4", "6", "a pinch of"};
+    private static final String[] UNITS = {"cups", "cup", "tbsp", "tsp", "g", "kg", "ml", "oz", "lb", "cloves", ""};
+    private static final String[] INGREDIENTS = {
+        "flour", "sugar", "brown sugar", "butter", "eggs", "milk", "salt", "black pepper", "olive oil",
+        "garlic", "onion", "red onion", "tomatoes", "cherry tomatoes", "basil", "oregano", "thyme",
+        "chicken breast", "ground beef", "salmon", "shrimp", "tofu", "rice", "pasta", "potatoes",
+        "carrots", "celery", "spinach", "mushrooms", "bell pepper", "lemon juice", "lime", "honey",
+        "soy sauce", "ginger", "cinnamon", "vanilla extract", "baking powder", "cocoa powder",
+        "dark chocolate", "heavy cream", "parmesan", "mozzarella", "cheddar", "yogurt", "oats",
+        "almonds", "walnuts", "coconut milk", "chickpeas", "black beans", "avocado", "cilantro"
+    };
+    private static final String[] DISH_WORDS = {
+        "Roasted", "Creamy", "Spicy", "Classic", "Grandma's", "Quick", "Smoky", "Lemon", "Garlic",
+        "Herb", "Chocolate", "Honey", "Crispy", "Slow-Cooked", "One-Pot", "Rustic", "Summer"
+    };
+    private static final String[] DISHES = {
+        "Pasta", "Soup", "Salad", "Stew", "Curry", "Pancakes", "Tacos", "Risotto", "Pie", "Cake",
+        "Smoothie", "Bowl", "Stir-Fry", "Casserole", "Muffins", "Omelette", "Burger", "Flatbread"
+    };
+    private static final String[] STEP_SENTENCES = {
+        "Preheat the oven to 180C.", "Chop the vegetables into even pieces.",
+        "Heat the oil in a large pan over medium heat.", "Simmer for 20 minutes, stirring occasionally.",
+        "Season to taste with salt and pepper.", "Whisk the wet ingredients together.",
+        "Fold in the dry ingredients until just combined.", "Bake until golden brown.",
+        "Let it rest for 10 minutes before serving.", "Garnish with fresh herbs.",
+        "Bring a pot of salted water to a boil.", "Blend until smooth."
+    };
+
+    static List<Recipe> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Recipe> recipes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            recipes.add(generate(random, i));
+        }
+        return recipes;
+    }
+
+    static Recipe generate(Random random, int number) {
+        String name = pick(random, DISH_WORDS) + " " + pick(random, INGREDIENTS) + " " + pick(random, DISHES)
+            + " #" + number;
+
+        int ingredientCount = 3 + random.nextInt(10);
+        List<String> ingredients = new ArrayList<>(ingredientCount);
+        for (int i = 0; i < ingredientCount; i++) {
+            String unit = pick(random, UNITS);
+            ingredients.add(pick(random, QUANTITIES) + (unit.isEmpty() ? "" : " " + unit) + " "
+                + pick(random, INGREDIENTS));
+        }
+
+        StringBuilder steps = new StringBuilder();
+        int stepCount = 3 + random.nextInt(6);
+        for (int i = 0; i < stepCount; i++) {
+            steps.append(i + 1).append(". ").append(pick(random, STEP_SENTENCES)).append('\n');
+        }
+
+        return new Recipe(new UUID(random.nextLong(), random.nextLong()).toString(), name,
+            pick(random, CATEGORIES), ingredients, steps.toString().trim());
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,85 @@
+package recipehaven;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Turning a camera-sized JPEG into a list thumbnail: decoding with source
+ * subsampling against decoding the whole photo and scaling it down. Run with
+ * {@code -prof gc} to compare the bytes allocated per thumbnail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThumbnailBenchmark {
+    private static final int THUMBNAIL_SIZE = 72;
+
+    @Param({"1600x1200", "4000x3000"})
+    String photoSize;
+
+    private Path dir;
+    private Path photo;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = photoSize.split("x");
+        dir = Files.createTempDirectory("thumbnail-bench");
+        photo = dir.resolve("photo.jpg");
+        writePhoto(photo, Integer.parseInt(size[0]), Integer.parseInt(size[1]), 42);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(photo);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public BufferedImage subsampled() throws IOException {
+        return PhotoStore.readScaled(photo, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+    }
+
+    @Benchmark
+    public BufferedImage fullDecodeThenScale() throws IOException {
+        BufferedImage full = ImageIO.read(photo.toFile());
+        double ratio = Math.max((double) full.getWidth() / THUMBNAIL_SIZE, (double) full.getHeight() / THUMBNAIL_SIZE);
+        int width = (int) Math.round(full.getWidth() / ratio);
+        int height = (int) Math.round(full.getHeight() / ratio);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(full, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /** Writes a JPEG with shapes and noise, so it compresses about as well as a photo does. */
+    static void writePhoto(Path file, int width, int height, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(width), random.nextInt(height), 50 + random.nextInt(width / 3),
+                50 + random.nextInt(height / 3));
+        }
+        g.dispose();
+        for (int y = 0; y < height; y += 2) {
+            for (int x = 0; x < width; x += 2) {
+                image.setRGB(x, y, image.getRGB(x, y) ^ random.nextInt(0x101010));
+            }
+        }
+        if (!ImageIO.write(image, "jpg", file.toFile())) throw new IOException("No JPEG writer");
+    }
+}
@@ -0,0 +1,127 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Scrolls a list of recipes that all have photos the way the recipe list asks
+ * for thumbnails, one screenful per frame on the EDT, and reports the time
+ * frames spent in {@link ThumbnailCache#get}, how many thumbnails were
+ * decoded, and the heap in use afterwards.
+ *
+ * Usage: {@code [recipes] [rows per frame] [photo width] [photo height]}.
+ * Every recipe links to the same photo file, so the check needs little disk.
+ */
+public class ThumbnailScrollCheck {
+    private static final int VISIBLE_ROWS = 8;
+    private static final int FRAME_MILLIS = 16;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int recipes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rowsPerFrame = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int photoWidth = args.length > 2 ? Integer.parseInt(args[2]) : 4000;
+        int photoHeight = args.length > 3 ? Integer.parseInt(args[3]) : 3000;
+
+        Path dir = Files.createTempDirectory("thumbnail-check");
+        Path photoDir = dir.resolve("photos");
+        Files.createDirectories(photoDir);
+        Path source = dir.resolve("photo.jpg");
+        ThumbnailBenchmark.writePhoto(source, photoWidth, photoHeight, 42);
+        String[] ids = new String[recipes];
+        for (int i = 0; i < recipes; i++) {
+            ids[i] = "recipe-" + i;
+            Path file = photoDir.resolve(ids[i] + ".photo");
+            try {
+                Files.createLink(file, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source, file);
+            }
+        }
+        PhotoStore photos = new PhotoStore(photoDir);
+        photos.load();
+
+        AtomicInteger decoded = new AtomicInteger();
+        ThumbnailCache[] cache = new ThumbnailCache[1];
+        SwingUtilities.invokeAndWait(() ->
+            cache[0] = new ThumbnailCache(photos, 72, 16L << 20, decoded::incrementAndGet));
+
+        long heapBefore = heapAfterGc();
+        long worstFrame = 0;
+        long totalTime = 0;
+        int frames = 0;
+        long start = System.nanoTime();
+        long firstFrame = frame(cache[0], ids, 0);
+        for (int top = rowsPerFrame; top + VISIBLE_ROWS <= recipes; top += rowsPerFrame) {
+            long took = frame(cache[0], ids, top);
+            worstFrame = Math.max(worstFrame, took);
+            totalTime += took;
+            frames++;
+            Thread.sleep(FRAME_MILLIS);
+        }
+        // Settle on the last screen until its thumbnails are in
+        int last = recipes - VISIBLE_ROWS;
+        while (!allLoaded(cache[0], ids, last)) {
+            worstFrame = Math.max(worstFrame, frame(cache[0], ids, last));
+            Thread.sleep(FRAME_MILLIS);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long heapAfter = heapAfterGc();
+        System.out.printf("%d recipes, %d rows per frame, %dx%d photos%n", recipes, rowsPerFrame,
+            photoWidth, photoHeight);
+        System.out.printf("scroll took %.1f s, %d thumbnails decoded%n", elapsed / 1e9, decoded.get());
+        // Wall time on the EDT, so with few cores it includes time the decoder thread was scheduled instead
+        System.out.printf("time in ThumbnailCache.get per scrolling frame: first %.3f ms, mean %.3f ms, worst %.3f ms%n",
+            firstFrame / 1e6, totalTime / 1e6 / frames, worstFrame / 1e6);
+        System.out.printf("heap in use: %.1f MB before, %.1f MB after (one full-size decode is %.1f MB)%n",
+            heapBefore / 1e6, heapAfter / 1e6, 4.0 * photoWidth * photoHeight / 1e6);
+
+        // Let loads still queued or running finish before their files go
+        SwingUtilities.invokeAndWait(() -> {
+            for (String id : ids) {
+                cache[0].invalidate(id);
+            }
+        });
+        Thread.sleep(1000);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(photoDir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(photoDir);
+        Files.delete(source);
+        Files.delete(dir);
+    }
+
+    private static long heapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Asks for one screenful of thumbnails on the EDT; returns the nanoseconds it took. */
+    private static long frame(ThumbnailCache cache, String[] ids, int top) throws Exception {
+        long[] took = new long[1];
+        SwingUtilities.invokeAndWait(() -> {
+            long start = System.nanoTime();
+            for (int row = top; row < top + VISIBLE_ROWS; row++) {
+                cache.get(ids[row]);
+            }
+            took[0] = System.nanoTime() - start;
+        });
+        return took[0];
+    }
+
+    private static boolean allLoaded(ThumbnailCache cache, String[] ids, int top) throws Exception {
+        boolean[] loaded = {true};
+        SwingUtilities.invokeAndWait(() -> {
+            for (int row = top; row < top + VISIBLE_ROWS; row++) {
+                if (cache.get(ids[row]) == null) loaded[0] = false;
+            }
+        });
+        return loaded[0];
+    }
+}
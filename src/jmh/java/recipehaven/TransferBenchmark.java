@@ -0,0 +1,86 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Exporting a whole book in each format, and importing the JSON and CSV
+ * exports into an empty book.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransferBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int recipes;
+
+    private Path dir;
+    private RecipeExporter exporter;
+    private Path jsonFile;
+    private Path csvFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("recipe-bench");
+        List<Recipe> book = SyntheticRecipes.generate(recipes, 42);
+        Set<String> favoriteIds = new HashSet<>();
+        for (int i = 0; i < recipes; i += 10) {
+            favoriteIds.add(book.get(i).id);
+        }
+        exporter = new RecipeExporter(new RecipeRepository(new RecipeStorage.Memory(book, favoriteIds)));
+        jsonFile = dir.resolve("recipes.jsonl");
+        csvFile = dir.resolve("recipes.csv");
+        exporter.exportFile(jsonFile, RecipeExporter.Format.JSON, "", RecipeRepository.ALL, written -> { });
+        exporter.exportFile(csvFile, RecipeExporter.Format.CSV, "", RecipeRepository.ALL, written -> { });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public int exportJson() throws IOException {
+        return export(RecipeExporter.Format.JSON, "out.jsonl");
+    }
+
+    @Benchmark
+    public int exportCsv() throws IOException {
+        return export(RecipeExporter.Format.CSV, "out.csv");
+    }
+
+    @Benchmark
+    public int exportHtml() throws IOException {
+        return export(RecipeExporter.Format.HTML, "out.html");
+    }
+
+    @Benchmark
+    public RecipeImporter.Result importJson() throws IOException {
+        return importInto(jsonFile, RecipeImporter.Format.JSON);
+    }
+
+    @Benchmark
+    public RecipeImporter.Result importCsv() throws IOException {
+        return importInto(csvFile, RecipeImporter.Format.CSV);
+    }
+
+    private int export(RecipeExporter.Format format, String name) throws IOException {
+        return exporter.exportFile(dir.resolve(name), format, "", RecipeRepository.ALL, written -> { });
+    }
+
+    private static RecipeImporter.Result importInto(Path file, RecipeImporter.Format format) throws IOException {
+        RecipeRepository repository = new RecipeRepository(new RecipeStorage.Memory());
+        return new RecipeImporter(repository).importFile(file, format, progress -> { });
+    }
+}
@@ -0,0 +1,130 @@
+package recipehaven;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Burkhard-Keller tree over words under Levenshtein distance, for finding the
+ * words within a small edit distance of a misspelled query without comparing
+ * it to the whole vocabulary. Each word carries the ids of the index terms it
+ * was derived from.
+ *
+ * Nodes live in parallel arrays; children are a linked list per node, keyed by
+ * their distance to the parent. Not thread-safe.
+ */
+class BkTree {
+    private String[] words = new String[64];
+    private int[][] ids = new int[64][];
+    private int[] idCounts = new int[64];
+    private int[] edge = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int size;
+
+    /** Adds the term id under the word, adding the word if it is new. */
+    void add(String word, int id) {
+        if (size == 0) {
+            newNode(word, 0, id);
+            return;
+        }
+        int node = 0;
+        while (true) {
+            int d = distance(word, words[node]);
+            if (d == 0) {
+                addId(node, id);
+                return;
+            }
+            int child = childAt(node, d);
+            if (child < 0) {
+                int added = newNode(word, d, id);
+                nextSibling[added] = firstChild[node];
+                firstChild[node] = added;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /** Reports the term ids of every word within {@code maxDistance} edits of the query. */
+    void search(String query, int maxDistance, IntConsumer out) {
+        if (size == 0) return;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int d = distance(query, words[node]);
+            if (d <= maxDistance) {
+                for (int i = 0; i < idCounts[node]; i++) {
+                    out.accept(ids[node][i]);
+                }
+            }
+            // By the triangle inequality only children this close can be within range
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edge[child] - d) <= maxDistance) {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = child;
+                }
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(words, 0, size, null);
+        Arrays.fill(ids, 0, size, null);
+        size = 0;
+    }
+
+    /** Levenshtein distance: insertions, deletions and substitutions each cost one. */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private int childAt(int node, int d) {
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            if (edge[child] == d) return child;
+        }
+        return -1;
+    }
+
+    private int newNode(String word, int d, int id) {
+        if (size == words.length) {
+            int capacity = size * 2;
+            words = Arrays.copyOf(words, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            idCounts = Arrays.copyOf(idCounts, capacity);
+            edge = Arrays.copyOf(edge, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+        }
+        int node = size++;
+        words[node] = word;
+        ids[node] = new int[] {id};
+        idCounts[node] = 1;
+        edge[node] = d;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        return node;
+    }
+
+    private void addId(int node, int id) {
+        if (idCounts[node] == ids[node].length) ids[node] = Arrays.copyOf(ids[node], idCounts[node] * 2);
+        ids[node][idCounts[node]++] = id;
+    }
+}
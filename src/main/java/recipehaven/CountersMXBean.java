@@ -0,0 +1,22 @@
+package recipehaven;
+
+/**
+ * Work counters published over JMX by {@link Diagnostics}. Public because JMX
+ * requires MXBean interfaces to be.
+ */
+public interface CountersMXBean {
+    long getStepSlotsChecked();
+
+    long getCardsRendered();
+
+    long getThumbnailsDecoded();
+
+    long getChangesCoalesced();
+
+    long getWriteFailures();
+
+    /** Saves queued or being written; not cleared by {@link #reset}. */
+    long getPendingWrites();
+
+    void reset();
+}
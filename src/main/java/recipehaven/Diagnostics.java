@@ -0,0 +1,368 @@
+package recipehaven;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Process-wide timings of the stages a user waits on, and counters of the work
+ * done inside them, so a slow book can be looked at without attaching a
+ * profiler. Every stage keeps a latency histogram; stages and counters are
+ * published as MXBeans under {@code recipehaven:*} once
+ * {@link #registerMBeans} is called, and each finished stage is also a
+ * {@code recipehaven.*} event in a Flight Recorder recording.
+ *
+ * Recording is lock-free and cheap enough for every search, paint and write,
+ * but not for every recipe; hot loops add up locally and report once.
+ * Thread-safe.
+ */
+final class Diagnostics {
+    static final Stage SEARCH = new Stage("search", "Search", "Running a search or filter off the EDT");
+    static final Stage REFRESH = new Stage("refresh", "List Refresh", "Updating the list with a result or change");
+    static final Stage PAINT = new Stage("paint", "List Paint", "Painting the visible recipe cards");
+    static final Stage LOAD = new Stage("load", "Load", "Loading the recipe book at startup");
+    static final Stage SAVE = new Stage("save", "Save", "Appending and syncing a batch of changes");
+    static final Stage COMPACT = new Stage("compact", "Compact", "Rewriting the book into a new snapshot");
+    static final Stage REQUEST = new Stage("request", "Server Request", "Serving one request in server mode");
+    static final List<Stage> STAGES = Collections.unmodifiableList(
+        Arrays.asList(SEARCH, REFRESH, PAINT, LOAD, SAVE, COMPACT, REQUEST));
+
+    static final Counter STEP_SLOTS_CHECKED = new Counter("stepSlotsChecked", "Recipes checked by steps searches");
+    static final Counter CARDS_RENDERED = new Counter("cardsRendered", "Recipe cards filled for painting");
+    static final Counter THUMBNAILS_DECODED = new Counter("thumbnailsDecoded", "Photo thumbnails decoded");
+    static final Counter CHANGES_COALESCED = new Counter("changesCoalesced", "Saves merged before writing");
+    static final Counter WRITE_FAILURES = new Counter("writeFailures", "Failed writes");
+    static final List<Counter> COUNTERS = Collections.unmodifiableList(
+        Arrays.asList(STEP_SLOTS_CHECKED, CARDS_RENDERED, THUMBNAILS_DECODED, CHANGES_COALESCED, WRITE_FAILURES));
+
+    static final Gauge PENDING_WRITES = new Gauge("pendingWrites", "Saves not yet on disk");
+
+    private static boolean registered;
+
+    private Diagnostics() {
+    }
+
+    /**
+     * Registers an MXBean per stage ({@code recipehaven:type=Stage,name=...})
+     * and one for the counters ({@code recipehaven:type=Counters}) with the
+     * platform MBean server. Later calls do nothing.
+     */
+    static synchronized void registerMBeans() throws JMException {
+        if (registered) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Stage stage : STAGES) {
+            server.registerMBean(stage, new ObjectName("recipehaven:type=Stage,name=" + stage.name));
+        }
+        server.registerMBean(new CountersBean(), new ObjectName("recipehaven:type=Counters"));
+        registered = true;
+    }
+
+    /** Clears every histogram and counter; gauges keep their level. */
+    static void reset() {
+        for (Stage stage : STAGES) {
+            stage.reset();
+        }
+        for (Counter counter : COUNTERS) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Latencies of one stage in power-of-two buckets of microseconds: bucket 0
+     * holds times under 1 us and bucket k times from 2^(k-1) up to 2^k us.
+     * Percentiles are reported as their bucket's upper bound, so they are
+     * accurate to within a factor of two.
+     */
+    static final class Stage implements StageMXBean {
+        private static final int BUCKETS = 40;
+
+        final String name;
+        final String label;
+        private final JfrEvents events;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Stage(String name, String label, String description) {
+            this.name = name;
+            this.label = label;
+            this.events = JfrEvents.create(name, label, description);
+        }
+
+        /** Starts timing one run of the stage; runs that never end are not counted. */
+        Span start() {
+            return new Span(this, events.begin());
+        }
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // Retry until the max is at least this run
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return percentileMillis(0.50);
+        }
+
+        @Override
+        public double getP95Millis() {
+            return percentileMillis(0.95);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return percentileMillis(0.99);
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        /** The upper bound of the bucket holding the given fraction of runs, capped at the max. */
+        double percentileMillis(double fraction) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min((1L << i) / 1e3, getMaxMillis());
+            }
+            return getMaxMillis();
+        }
+    }
+
+    /** One timed run of a stage. */
+    static final class Span {
+        private final Stage stage;
+        private final Object event;
+        private final long start = System.nanoTime();
+
+        private Span(Stage stage, Object event) {
+            this.stage = stage;
+            this.event = event;
+        }
+
+        void end() {
+            end(-1);
+        }
+
+        /** Records the run; {@code items} is how many things it handled, or -1. */
+        void end(long items) {
+            stage.record(System.nanoTime() - start);
+            stage.events.commit(event, items);
+        }
+    }
+
+    /** A running total of work done, such as cards rendered. */
+    static final class Counter {
+        final String name;
+        final String label;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String label) {
+            this.name = name;
+            this.label = label;
+        }
+
+        void add(long n) {
+            value.add(n);
+        }
+
+        void increment() {
+            value.increment();
+        }
+
+        long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+    }
+
+    /** A level that goes up and down, such as changes waiting to be written. */
+    static final class Gauge {
+        final String name;
+        final String label;
+        private final LongAdder value = new LongAdder();
+
+        private Gauge(String name, String label) {
+            this.name = name;
+            this.label = label;
+        }
+
+        void add(long n) {
+            value.add(n);
+        }
+
+        void increment() {
+            value.increment();
+        }
+
+        long get() {
+            return value.sum();
+        }
+    }
+
+    private static final class CountersBean implements CountersMXBean {
+        @Override
+        public long getStepSlotsChecked() {
+            return STEP_SLOTS_CHECKED.get();
+        }
+
+        @Override
+        public long getCardsRendered() {
+            return CARDS_RENDERED.get();
+        }
+
+        @Override
+        public long getThumbnailsDecoded() {
+            return THUMBNAILS_DECODED.get();
+        }
+
+        @Override
+        public long getChangesCoalesced() {
+            return CHANGES_COALESCED.get();
+        }
+
+        @Override
+        public long getWriteFailures() {
+            return WRITE_FAILURES.get();
+        }
+
+        @Override
+        public long getPendingWrites() {
+            return PENDING_WRITES.get();
+        }
+
+        @Override
+        public void reset() {
+            for (Counter counter : COUNTERS) {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * Flight Recorder events for one stage, defined at run time through
+     * {@code jdk.jfr.EventFactory} by reflection, since the app is built for
+     * Java 8, which has no such API. Where it is missing this does nothing.
+     * Each event carries the stage's duration and an item count.
+     */
+    private static final class JfrEvents {
+        private static final JfrEvents NONE = new JfrEvents(null, null, null, null, null, null, null);
+
+        private final Object factory;
+        private final Object eventType;
+        private final Method isEnabled;
+        private final Method newEvent;
+        private final Method begin;
+        private final Method set;
+        private final Method commit;
+
+        private JfrEvents(Object factory, Object eventType, Method isEnabled, Method newEvent, Method begin,
+                          Method set, Method commit) {
+            this.factory = factory;
+            this.eventType = eventType;
+            this.isEnabled = isEnabled;
+            this.newEvent = newEvent;
+            this.begin = begin;
+            this.set = set;
+            this.commit = commit;
+        }
+
+        static JfrEvents create(String name, String label, String description) {
+            try {
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+                Class<?> valueClass = Class.forName("jdk.jfr.ValueDescriptor");
+                Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+                List<Object> annotations = Arrays.asList(
+                    annotation.newInstance(Class.forName("jdk.jfr.Name"), "recipehaven." + name),
+                    annotation.newInstance(Class.forName("jdk.jfr.Label"), label),
+                    annotation.newInstance(Class.forName("jdk.jfr.Description"), description),
+                    annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] {"Recipe Haven"}),
+                    annotation.newInstance(Class.forName("jdk.jfr.StackTrace"), false));
+                List<Object> fields = Collections.singletonList(
+                    valueClass.getConstructor(Class.class, String.class, List.class).newInstance(long.class,
+                        "items", Collections.singletonList(
+                            annotation.newInstance(Class.forName("jdk.jfr.Label"), "Items"))));
+                Object factory = factoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+                Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+                return new JfrEvents(factory, eventType, eventType.getClass().getMethod("isEnabled"),
+                    factoryClass.getMethod("newEvent"), eventClass.getMethod("begin"),
+                    eventClass.getMethod("set", int.class, Object.class), eventClass.getMethod("commit"));
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                // Java 8, or a runtime without Flight Recorder
+                return NONE;
+            }
+        }
+
+        /** A started event, or null when no recording wants this stage. */
+        Object begin() {
+            if (factory == null) return null;
+            try {
+                if (!(Boolean) isEnabled.invoke(eventType)) return null;
+                Object event = newEvent.invoke(factory);
+                begin.invoke(event);
+                return event;
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        void commit(Object event, long items) {
+            if (event == null) return;
+            try {
+                set.invoke(event, 0, items);
+                commit.invoke(event);
+            } catch (ReflectiveOperationException e) {
+                // The stage is still in the histogram
+            }
+        }
+    }
+}
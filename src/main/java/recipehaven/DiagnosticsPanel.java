@@ -0,0 +1,97 @@
+package recipehaven;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Live view of {@link Diagnostics}: a row of latencies per stage, the work
+ * counters and the saves still pending, refreshed every second while the panel is showing.
+ */
+class DiagnosticsPanel extends JPanel {
+    private static final int REFRESH_MS = 1000;
+    private static final String[] COLUMNS = {"Stage", "Runs", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms"};
+
+    private final StageTableModel stages = new StageTableModel();
+    private final JLabel countersLabel = new JLabel();
+    private final Timer timer = new Timer(REFRESH_MS, e -> refresh());
+
+    DiagnosticsPanel() {
+        super(new BorderLayout(10, 10));
+        setBorder(Theme.WINDOW_PADDING);
+        setBackground(Theme.CREAM);
+
+        JTable table = new JTable(stages);
+        table.setFont(Theme.SMALL_TEXT);
+        table.setRowHeight(22);
+        table.setFillsViewportHeight(true);
+
+        countersLabel.setFont(Theme.TEXT);
+        countersLabel.setForeground(Theme.DARK_BROWN);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Diagnostics.reset();
+            refresh();
+        });
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setBackground(Theme.CREAM);
+        footer.add(countersLabel, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.setBackground(Theme.CREAM);
+        buttons.add(resetButton);
+        footer.add(buttons, BorderLayout.EAST);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(footer, BorderLayout.SOUTH);
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        stages.fireTableDataChanged();
+        StringBuilder sb = new StringBuilder("<html>");
+        for (Diagnostics.Counter counter : Diagnostics.COUNTERS) {
+            if (sb.length() > 6) sb.append(" &nbsp; ");
+            sb.append(counter.label).append(": <b>").append(counter.get()).append("</b>");
+        }
+        sb.append(" &nbsp; ").append(Diagnostics.PENDING_WRITES.label).append(": <b>")
+            .append(Diagnostics.PENDING_WRITES.get()).append("</b>");
+        countersLabel.setText(sb.append("</html>").toString());
+    }
+
+    private static final class StageTableModel extends AbstractTableModel {
+        public int getRowCount() { return Diagnostics.STAGES.size(); }
+        public int getColumnCount() { return COLUMNS.length; }
+        public String getColumnName(int column) { return COLUMNS[column]; }
+
+        public Object getValueAt(int row, int column) {
+            Diagnostics.Stage stage = Diagnostics.STAGES.get(row);
+            switch (column) {
+                case 0: return stage.label;
+                case 1: return stage.getCount();
+                case 2: return millis(stage.getMeanMillis());
+                case 3: return millis(stage.getP50Millis());
+                case 4: return millis(stage.getP95Millis());
+                case 5: return millis(stage.getP99Millis());
+                default: return millis(stage.getMaxMillis());
+            }
+        }
+
+        private static String millis(double value) {
+            return String.format("%.2f", value);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package recipehaven;
+
+import java.util.*;
+
+/**
+ * One ingredient line split into quantity, unit and a canonical ingredient,
+ * so that "2 cups flour", "Flour, 1 cup" and "1/2 cup flour (sifted)" all name
+ * the same ingredient.
+ *
+ * Lines are parsed leniently: an amount is a number, fraction, mixed number,
+ * range (its lower end) or "a"/"an", followed by an optional unit and "of".
+ * Whatever follows a comma is a preparation note unless the amount comes after
+ * the name. The remaining words, lowercased and with the last one made
+ * singular, are the canonical name, interned in the {@link IngredientDictionary}.
+ */
+final class Ingredient {
+    static final String NO_UNIT = "";
+
+    private static final Map<String, String> UNITS = new HashMap<>();
+    private static final Set<String> SIZES = new HashSet<>(Arrays.asList("small", "medium", "large"));
+    private static final String[] NOTES = {" to taste", " for serving", " for garnish", " optional"};
+    // Words that end in s without being plural
+    private static final Set<String> NOT_PLURAL = new HashSet<>(Arrays.asList(
+        "molasses", "swiss", "grits", "greens", "asparagus", "hummus", "couscous", "citrus", "bass",
+        "watercress", "schnapps"));
+
+    static {
+        unit("cup", "cups", "c");
+        unit("tbsp", "tbsps", "tbs", "tablespoon", "tablespoons");
+        unit("tsp", "tsps", "teaspoon", "teaspoons");
+        unit("g", "gr", "gram", "grams", "gramme", "grammes");
+        unit("kg", "kgs", "kilogram", "kilograms");
+        unit("ml", "milliliter", "milliliters", "millilitre", "millilitres");
+        unit("l", "liter", "liters", "litre", "litres");
+        unit("oz", "ounce", "ounces");
+        unit("lb", "lbs", "pound", "pounds");
+        unit("pint", "pints", "pt");
+        unit("quart", "quarts", "qt");
+        unit("clove", "cloves");
+        unit("pinch", "pinches");
+        unit("dash", "dashes");
+        unit("can", "cans", "tin", "tins");
+        unit("jar", "jars");
+        unit("package", "packages", "pkg");
+        unit("slice", "slices");
+        unit("piece", "pieces");
+        unit("stick", "sticks");
+        unit("bunch", "bunches");
+        unit("handful", "handfuls");
+        unit("sprig", "sprigs");
+    }
+
+    /** The amount, or NaN when the line gives none. */
+    final double quantity;
+    /** The canonical unit, or {@link #NO_UNIT}. */
+    final String unit;
+    /** The canonical ingredient's id in the {@link IngredientDictionary}. */
+    final int id;
+
+    private Ingredient(double quantity, String unit, int id) {
+        this.quantity = quantity;
+        this.unit = unit;
+        this.id = id;
+    }
+
+    String name() {
+        return IngredientDictionary.name(id);
+    }
+
+    /** Parses a free-text ingredient line, interning its canonical name. Thread-safe. */
+    static Ingredient parse(String line) {
+        Parsed parsed = new Parsed(line);
+        return new Ingredient(parsed.quantity, parsed.unit, IngredientDictionary.intern(parsed.name));
+    }
+
+    /**
+     * The canonical name a line or a bare ingredient such as "Tomatoes" parses
+     * to, without adding it to the dictionary.
+     */
+    static String canonicalName(String text) {
+        return new Parsed(text).name;
+    }
+
+    private static final class Parsed {
+        double quantity = Double.NaN;
+        String unit = NO_UNIT;
+        String name;
+
+        Parsed(String line) {
+            String text = normalize(line);
+            int comma = text.indexOf(',');
+            List<String> head = tokens(comma < 0 ? text : text.substring(0, comma));
+            int start = readAmount(head, true);
+            if (start == 0 && comma >= 0) {
+                // "flour, 1 cup": the amount follows the name
+                List<String> tail = tokens(text.substring(comma + 1));
+                Parsed amount = new Parsed();
+                if (amount.readAmount(tail, false) > 0) {
+                    quantity = amount.quantity;
+                    unit = amount.unit;
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = start; i < head.size(); i++) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(head.get(i));
+            }
+            name = trimPunctuation(sb.toString());
+            if (name.isEmpty()) {
+                name = text;
+            } else {
+                name = singular(name);
+            }
+        }
+
+        private Parsed() {
+        }
+
+        /**
+         * Reads a leading amount and unit, returning the index of the first name
+         * word. When a name must follow, a last word is never taken as the unit.
+         */
+        int readAmount(List<String> tokens, boolean nameFollows) {
+            int at = 0;
+            if (at < tokens.size() && (tokens.get(at).equals("a") || tokens.get(at).equals("an"))
+                    && tokens.size() > 1) {
+                quantity = 1;
+                at++;
+            } else {
+                double value = number(at < tokens.size() ? tokens.get(at) : "");
+                if (Double.isNaN(value)) return 0;
+                quantity = value;
+                at++;
+                // Mixed number "1 1/2" or range "2 - 3" / "2 to 3"
+                if (at < tokens.size()) {
+                    double next = number(tokens.get(at));
+                    if (!Double.isNaN(next) && next < 1 && value == Math.floor(value)) {
+                        quantity += next;
+                        at++;
+                    } else if (at + 1 < tokens.size() && (tokens.get(at).equals("-") || tokens.get(at).equals("to"))
+                            && !Double.isNaN(number(tokens.get(at + 1)))) {
+                        at += 2;
+                    }
+                }
+            }
+
+            if (at < tokens.size() && SIZES.contains(tokens.get(at))) at++;
+            if (at < tokens.size()) {
+                String canonical = UNITS.get(trimPunctuation(tokens.get(at)));
+                if (canonical != null && (!nameFollows || at + 1 < tokens.size())) {
+                    unit = canonical;
+                    at++;
+                }
+            }
+            if (at < tokens.size() - 1 && tokens.get(at).equals("of")) at++;
+            return at;
+        }
+    }
+
+    /**
+     * Lowercases, drops parenthesized remarks, bullets and trailing notes, and
+     * collapses whitespace.
+     */
+    private static String normalize(String line) {
+        String text = line.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(text.length());
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth > 0) depth--;
+            } else if (depth == 0) {
+                if (!Character.isWhitespace(c)) {
+                    sb.append(c);
+                } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                    sb.append(' ');
+                }
+            }
+        }
+        text = trimPunctuation(sb.toString());
+        for (String note : NOTES) {
+            if (text.endsWith(note)) text = text.substring(0, text.length() - note.length()).trim();
+        }
+        return text;
+    }
+
+    /** Splits on spaces, separating a unit glued to its number as in "200g". */
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.trim().split(" ")) {
+            if (token.isEmpty()) continue;
+            int split = 0;
+            while (split < token.length() && (Character.isDigit(token.charAt(split)) || token.charAt(split) == '.')) {
+                split++;
+            }
+            if (split > 0 && split < token.length() && UNITS.containsKey(token.substring(split))) {
+                tokens.add(token.substring(0, split));
+                tokens.add(token.substring(split));
+            } else {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /** Parses "2", "2.5", "1/2", "½", "1½" or the lower end of "2-3"; NaN for anything else. */
+    private static double number(String token) {
+        if (token.isEmpty()) return Double.NaN;
+        int dash = token.indexOf('-');
+        if (dash > 0) token = token.substring(0, dash);
+
+        double whole = 0;
+        char last = token.charAt(token.length() - 1);
+        double vulgar = vulgarFraction(last);
+        if (!Double.isNaN(vulgar)) {
+            if (token.length() == 1) return vulgar;
+            whole = vulgar;
+            token = token.substring(0, token.length() - 1);
+        }
+
+        int slash = token.indexOf('/');
+        try {
+            if (slash > 0) {
+                double denominator = Double.parseDouble(token.substring(slash + 1));
+                return denominator == 0 ? Double.NaN
+                    : whole + Double.parseDouble(token.substring(0, slash)) / denominator;
+            }
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                if (!Character.isDigit(c) && c != '.') return Double.NaN;
+            }
+            return whole + Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static double vulgarFraction(char c) {
+        switch (c) {
+            case '\u00BD': return 0.5;
+            case '\u00BC': return 0.25;
+            case '\u00BE': return 0.75;
+            case '\u2153': return 1.0 / 3;
+            case '\u2154': return 2.0 / 3;
+            case '\u215B': return 0.125;
+            default: return Double.NaN;
+        }
+    }
+
+    /** Makes the last word singular: berries, tomatoes, peaches, eggs. */
+    private static String singular(String name) {
+        int space = name.lastIndexOf(' ');
+        String word = name.substring(space + 1);
+        if (word.length() <= 3 || NOT_PLURAL.contains(word)) return name;
+
+        String stem;
+        if (word.endsWith("ies")) {
+            stem = word.substring(0, word.length() - 3) + "y";
+        } else if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes")
+                || word.endsWith("xes") || word.endsWith("sses")) {
+            stem = word.substring(0, word.length() - 2);
+        } else if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")) {
+            stem = word.substring(0, word.length() - 1);
+        } else {
+            return name;
+        }
+        return name.substring(0, space + 1) + stem;
+    }
+
+    private static String trimPunctuation(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && ".,;:-*".indexOf(text.charAt(start)) >= 0) start++;
+        while (end > start && ".,;:-*".indexOf(text.charAt(end - 1)) >= 0) end--;
+        return text.substring(start, end).trim();
+    }
+
+    private static void unit(String canonical, String... spellings) {
+        UNITS.put(canonical, canonical);
+        for (String spelling : spellings) {
+            UNITS.put(spelling, canonical);
+        }
+    }
+}
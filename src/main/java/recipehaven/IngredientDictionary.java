@@ -0,0 +1,54 @@
+package recipehaven;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of canonical ingredient names. Each name is stored
+ * once and given a small, dense int id, so recipes can keep their ingredient
+ * sets as sorted id arrays and indexes can key bitsets by ingredient.
+ *
+ * Ids start at 0, are never reused and stay valid for the life of the process.
+ * Lookups are lock-free; new names are added under a lock. Thread-safe.
+ */
+final class IngredientDictionary {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // Written under the class lock before the id is published in the map
+    private static volatile String[] names = new String[1024];
+    private static int size;
+
+    private IngredientDictionary() {
+    }
+
+    /** The id of the canonical name, adding it if it is new. */
+    static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        synchronized (IngredientDictionary.class) {
+            id = ids.get(name);
+            if (id != null) return id;
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            names = current;
+            ids.put(name, size);
+            return size++;
+        }
+    }
+
+    /** The id of the canonical name, or -1 if no recipe has used it. */
+    static int lookup(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+
+    static int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,147 @@
+package recipehaven;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The application's storage: a {@link RecipeJournal} written by a
+ * {@link RecipePersistence} thread. On first start a book saved by an
+ * earlier, Java-serialized version is migrated into it.
+ *
+ * Changes are queued and return immediately; write failures go to the error
+ * handler on the persistence thread.
+ *
+ * Only one process may have the book open: loading takes an exclusive lock on
+ * a lock file beside the log and closing releases it, so a window and a
+ * server started on the same book cannot write over each other.
+ */
+class JournalStorage implements RecipeStorage {
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /** Thrown by {@link #load} when another process has the book open. */
+    static final class LockedException extends IOException {
+        LockedException(String message) {
+            super(message);
+        }
+    }
+
+    private final RecipeJournal journal;
+    private final Path dataFile;
+    private final Path lockFile;
+    private final Path legacyRecipesFile;
+    private final Path legacyFavoritesFile;
+    private final Consumer<IOException> errorHandler;
+    private RecipePersistence persistence;
+    private FileChannel lockChannel;
+
+    JournalStorage(Path dataFile, Path logFile, Path legacyRecipesFile, Path legacyFavoritesFile,
+                   Consumer<IOException> errorHandler) {
+        this.journal = new RecipeJournal(dataFile, logFile);
+        this.dataFile = dataFile;
+        this.lockFile = logFile.resolveSibling(logFile.getFileName() + LOCK_SUFFIX);
+        this.legacyRecipesFile = legacyRecipesFile;
+        this.legacyFavoritesFile = legacyFavoritesFile;
+        this.errorHandler = errorHandler;
+    }
+
+    /** @throws LockedException if another process has the book open */
+    @Override
+    public RecipeStore.Contents load() throws IOException {
+        lock();
+        try {
+            RecipeStore.Contents contents;
+            if (journal.isEmpty()) {
+                contents = RecipeStore.readLegacy(legacyRecipesFile, legacyFavoritesFile);
+                if (!contents.recipes.isEmpty() || !contents.favoriteIds.isEmpty()) {
+                    journal.saveSnapshot(contents.recipes, contents.favoriteIds);
+                }
+            } else {
+                contents = journal.load();
+            }
+            persistence = new RecipePersistence(journal, errorHandler);
+            return contents;
+        } catch (IOException | RuntimeException e) {
+            unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void recipeSaved(Recipe recipe, RecipeRepository.Snapshot book) {
+        persistence.recipeSaved(recipe);
+        offerSnapshot(book);
+    }
+
+    /** Writes the whole book as a new snapshot rather than logging every recipe. */
+    @Override
+    public void recipesSaved(List<Recipe> recipes, RecipeRepository.Snapshot book) {
+        persistence.recipesSaved(recipes, new RecipeStore.Contents(book.recipes, book.favoriteIds));
+    }
+
+    @Override
+    public void recipeDeleted(String id, RecipeRepository.Snapshot book) {
+        persistence.recipeDeleted(id);
+        offerSnapshot(book);
+    }
+
+    @Override
+    public void favoriteChanged(String id, boolean favorite, RecipeRepository.Snapshot book) {
+        persistence.favoriteChanged(id, favorite);
+        offerSnapshot(book);
+    }
+
+    /** Writes out queued changes, waits for compaction, closes the journal and releases the book. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (persistence != null) {
+                persistence.close();
+            } else {
+                journal.close();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void lock() throws IOException {
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by this process, through another storage on the same book
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new LockedException("The recipe book " + dataFile.toAbsolutePath()
+                + " is already open in another RecipeHaven window or server");
+        }
+        lockChannel = channel;
+    }
+
+    /** Closing the channel releases its lock; the lock file itself stays. */
+    private void unlock() throws IOException {
+        if (lockChannel == null) return;
+        FileChannel channel = lockChannel;
+        lockChannel = null;
+        channel.close();
+    }
+
+    /** Snapshots never change, so the book can be compacted into as it is. */
+    private void offerSnapshot(RecipeRepository.Snapshot book) {
+        if (persistence.isSnapshotWanted()) {
+            persistence.submitSnapshot(new RecipeStore.Contents(book.recipes, book.favoriteIds));
+        }
+    }
+}
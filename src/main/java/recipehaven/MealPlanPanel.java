@@ -0,0 +1,191 @@
+package recipehaven;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The meal plan and its shopping list: the planned recipes, each with how
+ * many times it is made, beside the {@link ShoppingList} for them. The list
+ * is made again off the EDT after every change to the plan, and when the
+ * panel is shown, so it follows edits to planned recipes.
+ */
+class MealPlanPanel extends JPanel {
+    private static final String[] COLUMNS = {"Recipe", "Times Made"};
+
+    private final RecipeRepository repository;
+    private final Supplier<List<Recipe>> listed;
+    private final ShoppingList shoppingList = new ShoppingList();
+    private final PlanTableModel plan = new PlanTableModel();
+    private final JTable table = new JTable(plan);
+    private final JTextArea listArea = new JTextArea();
+    private final JLabel listLabel = new JLabel("Shopping List");
+    // Bumped by every change, so a slower, older list never replaces a newer one
+    private int generation;
+
+    /** {@code listed} gives the recipes the main list shows, for "Add Listed". */
+    MealPlanPanel(RecipeRepository repository, Supplier<List<Recipe>> listed) {
+        super(new BorderLayout(10, 10));
+        this.repository = repository;
+        this.listed = listed;
+        setBorder(Theme.WINDOW_PADDING);
+        setBackground(Theme.CREAM);
+
+        table.setFont(Theme.SMALL_TEXT);
+        table.setRowHeight(22);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(1).setMaxWidth(100);
+
+        JButton addListedButton = new JButton("Add Listed");
+        addListedButton.setToolTipText("Add every recipe the main list shows");
+        addListedButton.addActionListener(e -> plan.add(listed.get()));
+        JButton removeButton = new JButton("Remove");
+        removeButton.addActionListener(e -> plan.remove(table.getSelectedRows()));
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> plan.clear());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        buttons.setBackground(Theme.CREAM);
+        buttons.add(addListedButton);
+        buttons.add(removeButton);
+        buttons.add(clearButton);
+
+        JPanel planPanel = new JPanel(new BorderLayout(5, 5));
+        planPanel.setBackground(Theme.CREAM);
+        planPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+        planPanel.add(buttons, BorderLayout.SOUTH);
+
+        listLabel.setFont(Theme.LABEL);
+        listLabel.setForeground(Theme.DARK_BROWN);
+        listArea.setFont(Theme.SMALL_TEXT);
+        listArea.setEditable(false);
+        listArea.setBackground(Theme.WARM_WHITE);
+        JPanel listPanel = new JPanel(new BorderLayout(5, 5));
+        listPanel.setBackground(Theme.CREAM);
+        listPanel.add(listLabel, BorderLayout.NORTH);
+        listPanel.add(new JScrollPane(listArea), BorderLayout.CENTER);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, planPanel, listPanel);
+        split.setResizeWeight(0.5);
+        split.setBorder(Theme.NO_BORDER);
+        add(split, BorderLayout.CENTER);
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh();
+    }
+
+    /** Adds the recipe to the plan, made once, unless it is planned already. */
+    void add(Recipe recipe) {
+        plan.add(Collections.singletonList(recipe));
+    }
+
+    /** Makes the shopping list for the plan as it is now, in the background. */
+    private void refresh() {
+        int current = ++generation;
+        List<String> ids = new ArrayList<>(plan.ids);
+        List<Double> scales = new ArrayList<>(plan.scales);
+        listLabel.setText("Shopping List (updating...)");
+        new SwingWorker<Map<String, List<ShoppingList.Item>>, Void>() {
+            protected Map<String, List<ShoppingList.Item>> doInBackground() {
+                List<ShoppingList.Planned> planned = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    // The current version of each recipe; deleted ones are left out
+                    Recipe recipe = repository.get(ids.get(i));
+                    if (recipe != null) planned.add(new ShoppingList.Planned(recipe, scales.get(i)));
+                }
+                return shoppingList.generate(planned);
+            }
+
+            protected void done() {
+                if (current != generation) return;
+                try {
+                    Map<String, List<ShoppingList.Item>> list = get();
+                    int items = 0;
+                    for (List<ShoppingList.Item> aisle : list.values()) {
+                        items += aisle.size();
+                    }
+                    listLabel.setText("Shopping List (" + items + " items)");
+                    listArea.setText(ShoppingList.format(list));
+                    listArea.setCaretPosition(0);
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    listLabel.setText("Shopping List (failed: " + e.getCause().getMessage() + ")");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /** The planned recipes in the order added; every change makes the list again. */
+    private final class PlanTableModel extends AbstractTableModel {
+        final List<String> ids = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<Double> scales = new ArrayList<>();
+        private final Set<String> planned = new HashSet<>();
+
+        public int getRowCount() { return ids.size(); }
+        public int getColumnCount() { return COLUMNS.length; }
+        public String getColumnName(int column) { return COLUMNS[column]; }
+        public Class<?> getColumnClass(int column) { return column == 0 ? String.class : Double.class; }
+        public boolean isCellEditable(int row, int column) { return column == 1; }
+
+        public Object getValueAt(int row, int column) {
+            return column == 0 ? names.get(row) : scales.get(row);
+        }
+
+        public void setValueAt(Object value, int row, int column) {
+            double scale = (Double) value;
+            if (!ShoppingList.isValidScale(scale)) {
+                // The editor takes "NaN" and "Infinity" as numbers too
+                UIManager.getLookAndFeel().provideErrorFeedback(table);
+                return;
+            }
+            if (scale == scales.get(row)) return;
+            scales.set(row, scale);
+            fireTableCellUpdated(row, column);
+            refresh();
+        }
+
+        void add(List<Recipe> recipes) {
+            int first = ids.size();
+            for (Recipe recipe : recipes) {
+                if (!planned.add(recipe.id)) continue;
+                ids.add(recipe.id);
+                names.add(recipe.name);
+                scales.add(1.0);
+            }
+            if (ids.size() == first) return;
+            fireTableRowsInserted(first, ids.size() - 1);
+            refresh();
+        }
+
+        void remove(int[] rows) {
+            if (rows.length == 0) return;
+            for (int i = rows.length - 1; i >= 0; i--) {
+                planned.remove(ids.remove(rows[i]));
+                names.remove(rows[i]);
+                scales.remove(rows[i]);
+            }
+            fireTableDataChanged();
+            refresh();
+        }
+
+        void clear() {
+            planned.clear();
+            ids.clear();
+            names.clear();
+            scales.clear();
+            fireTableDataChanged();
+            refresh();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package recipehaven;
+
+import java.util.*;
+
+/** How well a pantry covers one recipe's ingredients. */
+final class PantryMatch {
+    final Recipe recipe;
+    /** Distinct canonical ingredients of the recipe that are in the pantry. */
+    final int have;
+    /** Distinct canonical ingredients of the recipe. */
+    final int total;
+    /** Canonical names of the ingredients still needed. */
+    final List<String> missing;
+
+    PantryMatch(Recipe recipe, int have, int total, List<String> missing) {
+        this.recipe = recipe;
+        this.have = have;
+        this.total = total;
+        this.missing = Collections.unmodifiableList(missing);
+    }
+
+    double coverage() {
+        return total == 0 ? 0 : (double) have / total;
+    }
+
+    /**
+     * Best first: higher coverage, then fewer missing ingredients. Ties keep
+     * whatever order they came in.
+     */
+    static int compareCoverage(int have1, int total1, int have2, int total2) {
+        int byCoverage = Long.compare((long) have2 * total1, (long) have1 * total2);
+        if (byCoverage != 0) return byCoverage;
+        return Integer.compare(total1 - have1, total2 - have2);
+    }
+}
@@ -0,0 +1,163 @@
+package recipehaven;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Recipe photos, one file per recipe id in a directory of their own, so the
+ * recipe data file stays small and photos are only read when shown. Files
+ * keep the bytes of the picked image in any format ImageIO reads.
+ *
+ * Which recipes have a photo is listed once by {@link #load} and kept in
+ * memory. Thread-safe.
+ */
+class PhotoStore {
+    private static final String SUFFIX = ".photo";
+
+    private final Path directory;
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+
+    PhotoStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Lists the photos already in the directory. */
+    void load() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(SUFFIX))
+                .forEach(name -> ids.add(idOf(name.substring(0, name.length() - SUFFIX.length()))));
+        }
+    }
+
+    boolean hasPhoto(String id) {
+        return ids.contains(id);
+    }
+
+    /**
+     * Copies the image file in as the recipe's photo, replacing any earlier
+     * one. The copy is renamed into place, so a failed copy keeps the old photo.
+     *
+     * @throws IOException if the file is not an image ImageIO can read, or cannot be copied
+     */
+    void setPhoto(String id, Path image) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            if (in == null) throw new NoSuchFileException(image.toString());
+            if (!ImageIO.getImageReaders(in).hasNext()) {
+                throw new IOException("Not a supported image: " + image.getFileName());
+            }
+        }
+        Files.createDirectories(directory);
+        Path file = file(id);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.copy(image, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        ids.add(id);
+    }
+
+    void removePhoto(String id) throws IOException {
+        if (ids.remove(id)) Files.deleteIfExists(file(id));
+    }
+
+    /**
+     * Reads the recipe's photo scaled down to fit in the given box, keeping its
+     * aspect ratio; smaller photos are returned at their own size.
+     *
+     * @throws IOException if the recipe has no readable photo
+     */
+    BufferedImage read(String id, int maxWidth, int maxHeight) throws IOException {
+        return readScaled(file(id), maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes an image at a fraction of its resolution, skipping source pixels
+     * as it reads, so a large photo never exists in memory at full size. It
+     * decodes at about twice the target size and smooths down from there.
+     */
+    static BufferedImage readScaled(Path file, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) throw new NoSuchFileException(file.toString());
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("Not a supported image: " + file.getFileName());
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                double ratio = Math.max((double) width / maxWidth, (double) height / maxHeight);
+                int step = Math.max(1, (int) (ratio / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                if (ratio <= 1) return decoded;
+                return scale(decoded, Math.max(1, (int) Math.round(width / ratio)),
+                    Math.max(1, (int) Math.round(height / ratio)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private Path file(String id) {
+        return directory.resolve(fileName(id) + SUFFIX);
+    }
+
+    /**
+     * A file name for an id or other name. Names made of letters, digits and
+     * dashes, as generated ids are, are used as is.
+     */
+    static String fileName(String id) {
+        boolean plain = !id.isEmpty();
+        for (int i = 0; i < id.length() && plain; i++) {
+            char c = id.charAt(i);
+            plain = c < 128 && (Character.isLetterOrDigit(c) || c == '-');
+        }
+        if (plain) return id;
+        // Anything else, such as an imported id, is hex encoded behind a marker
+        StringBuilder sb = new StringBuilder("~");
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /** The id or name a {@link #fileName} stands for. */
+    static String idOf(String fileName) {
+        if (!fileName.startsWith("~")) return fileName;
+        byte[] bytes = new byte[(fileName.length() - 1) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(fileName.substring(1 + i * 2, 3 + i * 2), 16);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+package recipehaven;
+
+import java.io.Serializable;
+import java.util.*;
+
+class Recipe implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final List<String> CATEGORIES = Collections.unmodifiableList(Arrays.asList(
+        "Breakfast", "Lunch", "Dinner", "Dessert", "Snack", "Beverage", "Appetizer"));
+
+    String id;
+    String name;
+    String category;
+    // Null while the details still live in the mapped recipe file
+    private List<String> ingredients;
+    private String steps;
+
+    // Lazily loaded recipes keep just enough to draw a list row
+    private transient Details details;
+    private transient List<String> ingredientPreview;
+    private transient int ingredientCount;
+
+    /** Reads the full ingredient list and steps of a recipe on demand. */
+    interface Details {
+        List<String> readIngredients();
+        String readSteps();
+    }
+
+    public Recipe(String name, String category, List<String> ingredients, String steps) {
+        this(UUID.randomUUID().toString(), name, category, ingredients, steps);
+    }
+
+    Recipe(String id, String name, String category, List<String> ingredients, String steps) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.ingredients = new ArrayList<>(ingredients);
+        this.steps = steps;
+    }
+
+    /** A recipe whose ingredients and steps are read from {@code details} when first needed. */
+    Recipe(String id, String name, String category, List<String> ingredientPreview, int ingredientCount,
+           Details details) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.ingredientPreview = ingredientPreview;
+        this.ingredientCount = ingredientCount;
+        this.details = details;
+    }
+
+    /** The full ingredient list, loading and keeping it if needed. */
+    synchronized List<String> getIngredients() {
+        if (ingredients == null) ingredients = details.readIngredients();
+        return ingredients;
+    }
+
+    /** The cooking steps, loading and keeping them if needed. */
+    synchronized String getSteps() {
+        if (steps == null) steps = details.readSteps();
+        return steps;
+    }
+
+    /** The full ingredient list without keeping it in memory, for indexing and saving. */
+    synchronized List<String> readIngredients() {
+        return ingredients != null ? ingredients : details.readIngredients();
+    }
+
+    /** The cooking steps without keeping them in memory, for saving. */
+    synchronized String readSteps() {
+        return steps != null ? steps : details.readSteps();
+    }
+
+    synchronized void setDetails(List<String> ingredients, String steps) {
+        this.ingredients = ingredients;
+        this.steps = steps;
+        this.details = null;
+        this.ingredientPreview = null;
+    }
+
+    /** A copy that shares the unloaded details instead of reading them. */
+    synchronized Recipe copy() {
+        if (ingredients != null && steps != null) {
+            return new Recipe(id, name, category, ingredients, steps);
+        }
+        Recipe copy = new Recipe(id, name, category, preview(), ingredientCount(), details);
+        copy.ingredients = ingredients;
+        copy.steps = steps;
+        return copy;
+    }
+
+    public String getShortIngredients() {
+        List<String> preview;
+        int total;
+        synchronized (this) {
+            preview = preview();
+            total = ingredientCount();
+        }
+        if (total == 0) return "No ingredients";
+
+        StringBuilder sb = new StringBuilder();
+        int count = Math.min(3, total);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(", ");
+            String ing = preview.get(i);
+            sb.append(ing.length() > 30 ? ing.substring(0, 27) + "..." : ing);
+        }
+        if (total > 3) {
+            sb.append(" (+" + (total - 3) + " more)");
+        }
+        return sb.toString();
+    }
+
+    private List<String> preview() {
+        return ingredients != null ? ingredients : ingredientPreview;
+    }
+
+    private int ingredientCount() {
+        return ingredients != null ? ingredients.size() : ingredientCount;
+    }
+}
@@ -0,0 +1,253 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes recipes from a {@link RecipeRepository} as JSON Lines, CSV or a
+ * printable HTML page.
+ *
+ * Recipes are selected with the same search text and category filter as the
+ * recipe list, then written one at a time through a fixed-size buffer. Lazily
+ * loaded details are read for the recipe being written and dropped again, so
+ * the heap used stays constant apart from the list of matching references,
+ * however large the book is.
+ *
+ * JSON and CSV exports can be read back by {@link RecipeImporter}.
+ */
+class RecipeExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    enum Format {
+        JSON, CSV, HTML;
+
+        /** Guesses the format from the file name; anything unknown is written as JSON Lines. */
+        static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".html") || name.endsWith(".htm")) return HTML;
+            return JSON;
+        }
+    }
+
+    private final RecipeRepository repository;
+
+    RecipeExporter(RecipeRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Exports to a temporary file next to the target and renames it into place,
+     * so a failed or cancelled export leaves no partial file behind.
+     *
+     * @return the number of recipes written
+     */
+    int exportFile(Path file, Format format, String searchText, String filter, IntConsumer progress)
+            throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            int written;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer out = new BufferedWriter(
+                     Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE)) {
+                written = export(out, format, searchText, filter, progress);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes the recipes matching the search text and category filter, as
+     * {@link RecipeRepository#search} selects them, in book order. Stops with an
+     * {@link InterruptedIOException} when the calling thread is interrupted.
+     *
+     * @param progress called with the number of recipes written so far, every
+     *                 {@value #PROGRESS_INTERVAL} recipes
+     * @return the number of recipes written
+     */
+    int export(Writer out, Format format, String searchText, String filter, IntConsumer progress)
+            throws IOException {
+        RecipeRepository.Snapshot book = repository.snapshot();
+        List<Recipe> recipes = repository.search(searchText, filter);
+
+        if (format == Format.CSV) {
+            out.write("name,category,ingredients,steps,favorite\r\n");
+        } else if (format == Format.HTML) {
+            writeHtmlHeader(out, recipes.size());
+        }
+
+        int written = 0;
+        for (Recipe recipe : recipes) {
+            // Read without keeping, so lazily loaded details are not pinned in memory
+            List<String> ingredients = recipe.readIngredients();
+            String steps = recipe.readSteps();
+            boolean favorite = book.isFavorite(recipe.id);
+            switch (format) {
+                case JSON:
+                    writeJson(out, recipe, ingredients, steps, favorite);
+                    break;
+                case CSV:
+                    writeCsv(out, recipe, ingredients, steps, favorite);
+                    break;
+                case HTML:
+                    writeHtml(out, recipe, ingredients, steps, favorite);
+                    break;
+            }
+
+            if (++written % PROGRESS_INTERVAL == 0) {
+                progress.accept(written);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+            }
+        }
+
+        if (format == Format.HTML) out.write("</body>\n</html>\n");
+        progress.accept(written);
+        return written;
+    }
+
+    // JSON Lines
+
+    /** Writes one recipe as a JSON object on a line of its own. */
+    static void writeJson(Writer out, Recipe recipe, List<String> ingredients, String steps,
+                          boolean favorite) throws IOException {
+        out.write("{\"id\":");
+        writeJsonString(out, recipe.id);
+        out.write(",\"name\":");
+        writeJsonString(out, recipe.name);
+        out.write(",\"category\":");
+        writeJsonString(out, recipe.category);
+        out.write(",\"ingredients\":[");
+        for (int i = 0; i < ingredients.size(); i++) {
+            if (i > 0) out.write(',');
+            writeJsonString(out, ingredients.get(i));
+        }
+        out.write("],\"steps\":");
+        writeJsonString(out, steps);
+        out.write(",\"favorite\":");
+        out.write(favorite ? "true" : "false");
+        out.write("}\n");
+    }
+
+    static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    // JavaScript line separators are escaped too
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    // CSV
+
+    private static void writeCsv(Writer out, Recipe recipe, List<String> ingredients, String steps,
+                                 boolean favorite) throws IOException {
+        writeCsvField(out, recipe.name);
+        out.write(',');
+        writeCsvField(out, recipe.category);
+        out.write(',');
+        // Every ingredient ends a line, so even a single one is not split at semicolons on import
+        StringBuilder lines = new StringBuilder();
+        for (String ingredient : ingredients) {
+            lines.append(ingredient).append('\n');
+        }
+        writeCsvField(out, lines.toString());
+        out.write(',');
+        writeCsvField(out, steps);
+        out.write(',');
+        out.write(favorite ? "yes" : "no");
+        out.write("\r\n");
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    // HTML
+
+    private static void writeHtmlHeader(Writer out, int count) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Recipe Haven</title>\n"
+            + "<style>\n"
+            + "body { font-family: 'Segoe UI', sans-serif; color: #654321; background: #fffaf0; margin: 2em; }\n"
+            + "h1 { color: #d26950; }\n"
+            + "article { background: #faf8f6; border: 2px solid #ffe4c4; padding: 1em 1.5em; margin-bottom: 1.5em;"
+            + " page-break-inside: avoid; break-inside: avoid; }\n"
+            + "h2 { color: #d26950; margin: 0 0 0.2em; }\n"
+            + ".category { color: #8a9a7c; font-style: italic; margin: 0; }\n"
+            + ".favorite { color: #ffd700; }\n"
+            + ".steps { white-space: pre-line; }\n"
+            + "@media print { body { background: none; margin: 0; } article { border-color: #ccc; } }\n"
+            + "</style>\n</head>\n<body>\n<h1>Recipe Haven</h1>\n");
+        out.write("<p>" + count + (count == 1 ? " recipe" : " recipes") + "</p>\n");
+    }
+
+    private static void writeHtml(Writer out, Recipe recipe, List<String> ingredients, String steps,
+                                  boolean favorite) throws IOException {
+        out.write("<article>\n<h2>");
+        if (favorite) out.write("<span class=\"favorite\">★</span> ");
+        writeHtmlText(out, recipe.name);
+        out.write("</h2>\n<p class=\"category\">");
+        writeHtmlText(out, recipe.category);
+        out.write("</p>\n<h3>Ingredients</h3>\n<ul>\n");
+        for (String ingredient : ingredients) {
+            out.write("<li>");
+            writeHtmlText(out, ingredient);
+            out.write("</li>\n");
+        }
+        out.write("</ul>\n<h3>Steps</h3>\n<p class=\"steps\">");
+        writeHtmlText(out, steps);
+        out.write("</p>\n</article>\n");
+    }
+
+    private static void writeHtmlText(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                case '&': out.write("&amp;"); break;
+                case '"': out.write("&quot;"); break;
+                default: out.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,1416 @@
+package recipehaven;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+public class RecipeHaven extends JFrame {
+    private RecipeRepository repository;
+    private PhotoStore photos;
+    private ThumbnailCache thumbnails;
+    private JPanel recipePanel;
+    private JList<Recipe> recipeList;
+    private RecipeListModel listModel;
+    private RecipeCardRenderer cardRenderer;
+    private JTextField searchField;
+    private JComboBox<String> categoryFilter;
+    private JTextField pantryField;
+    private JCheckBox stepsCheckBox;
+    private SearchPipeline<SearchResult> searchPipeline;
+    private JLabel statusLabel;
+    private JDialog diagnosticsDialog;
+    private MealPlanPanel mealPlanPanel;
+    private JDialog mealPlanDialog;
+    private String loadError;
+    private String currentFilter = "All";
+    
+    static final String DATA_FILE = "recipes_data.bin";
+    static final String LOG_FILE = "recipes_data.log";
+    // Java-serialized files from earlier versions, migrated on first load
+    static final String LEGACY_DATA_FILE = "recipes_data.ser";
+    static final String LEGACY_FAVORITES_FILE = "favorites_data.ser";
+    private static final String PHOTO_DIR = "recipe_photos";
+    private static final int THUMBNAIL_SIZE = 72;
+    private static final long THUMBNAIL_CACHE_BYTES =
+        Integer.getInteger("recipehaven.thumbnailCacheMb", 16) * 1024L * 1024L;
+    private static final int DETAIL_PHOTO_WIDTH = 520;
+    private static final int DETAIL_PHOTO_HEIGHT = 360;
+    private static final int SEARCH_DEBOUNCE_MS = Integer.getInteger("recipehaven.searchDebounceMs", 150);
+    private static final int SEARCH_BUDGET_MS = Integer.getInteger("recipehaven.searchBudgetMs", 100);
+    private static final int RANKED_RESULTS = 50;
+    private static final int PANTRY_RESULTS = 500;
+
+    public RecipeHaven() {
+        searchPipeline = new SearchPipeline<>(SEARCH_DEBOUNCE_MS, result -> {
+            Diagnostics.Span span = Diagnostics.REFRESH.start();
+            cardRenderer.setPantryMatches(result.pantryMatches);
+            cardRenderer.setStepsQuery(result.stepsQuery);
+            listModel.setRecipes(result.recipes);
+            refreshRecipeDisplay();
+            span.end(result.recipes.size());
+        });
+        
+        loadData();
+        initUI();
+        listModel.setRecipes(repository.snapshot().recipes);
+        refreshRecipeDisplay();
+        // The first search builds the index; run it now, off the EDT
+        filterRecipes();
+    }
+
+    private void initUI() {
+        setTitle("Recipe Haven - Your Personal Cookbook");
+        setSize(1200, 800);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                closeRepository();
+            }
+        });
+        getRootPane().registerKeyboardAction(e -> showDiagnostics(),
+            KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+            JComponent.WHEN_IN_FOCUSED_WINDOW);
+        
+        // Main panel with background
+        JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
+        mainPanel.setBackground(Theme.CREAM);
+        mainPanel.setBorder(Theme.WINDOW_PADDING);
+        
+        // Header
+        mainPanel.add(createHeader(), BorderLayout.NORTH);
+        
+        // Center - Recipe display area
+        mainPanel.add(createRecipeDisplayArea(), BorderLayout.CENTER);
+        
+        // Footer - save problems are reported here instead of in a modal dialog
+        statusLabel = new JLabel(loadError != null ? loadError : " ");
+        statusLabel.setFont(Theme.SMALL);
+        statusLabel.setForeground(Theme.RED);
+        mainPanel.add(statusLabel, BorderLayout.SOUTH);
+        
+        add(mainPanel);
+    }
+
+    private JPanel createHeader() {
+        JPanel header = new JPanel(new BorderLayout(10, 10));
+        header.setBackground(Theme.CREAM);
+        
+        // Title
+        JLabel title = new JLabel("Recipe Haven", SwingConstants.CENTER);
+        title.setFont(Theme.TITLE);
+        title.setForeground(Theme.TERRACOTTA);
+        header.add(title, BorderLayout.NORTH);
+        
+        // Search and filter panel
+        JPanel controlPanel = new JPanel(new BorderLayout(10, 10));
+        controlPanel.setBackground(Theme.CREAM);
+        
+        // Search panel
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        searchPanel.setBackground(Theme.CREAM);
+        
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(Theme.TEXT);
+        searchField = new JTextField(25);
+        searchField.setFont(Theme.TEXT);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) { scheduleSearch(); }
+            public void removeUpdate(DocumentEvent e) { scheduleSearch(); }
+            public void insertUpdate(DocumentEvent e) { scheduleSearch(); }
+        });
+        
+        // Steps are matched as a phrase through the step index, listed in book order
+        stepsCheckBox = new JCheckBox("Include steps");
+        stepsCheckBox.setFont(Theme.TEXT);
+        stepsCheckBox.setBackground(Theme.CREAM);
+        stepsCheckBox.addActionListener(e -> filterRecipes());
+        
+        searchPanel.add(searchLabel);
+        searchPanel.add(searchField);
+        searchPanel.add(stepsCheckBox);
+        
+        // Filter panel
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        filterPanel.setBackground(Theme.CREAM);
+        
+        JLabel filterLabel = new JLabel("Category:");
+        filterLabel.setFont(Theme.TEXT);
+        
+        String[] categories = {"All", "Breakfast", "Lunch", "Dinner", "Dessert", 
+                              "Snack", "Beverage", "Appetizer", "Favorites"};
+        categoryFilter = new JComboBox<>(categories);
+        categoryFilter.setFont(Theme.TEXT);
+        categoryFilter.addActionListener(e -> {
+            currentFilter = (String) categoryFilter.getSelectedItem();
+            filterRecipes();
+        });
+        
+        filterPanel.add(filterLabel);
+        filterPanel.add(categoryFilter);
+        
+        // Pantry - ranks recipes by how many of their ingredients are on hand
+        JLabel pantryLabel = new JLabel("Cook with:");
+        pantryLabel.setFont(Theme.TEXT);
+        pantryField = new JTextField(18);
+        pantryField.setFont(Theme.TEXT);
+        pantryField.setToolTipText("Ingredients you have, separated by commas, e.g. eggs, flour, milk");
+        pantryField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) { scheduleSearch(); }
+            public void removeUpdate(DocumentEvent e) { scheduleSearch(); }
+            public void insertUpdate(DocumentEvent e) { scheduleSearch(); }
+        });
+        
+        filterPanel.add(pantryLabel);
+        filterPanel.add(pantryField);
+        
+        controlPanel.add(searchPanel, BorderLayout.WEST);
+        controlPanel.add(filterPanel, BorderLayout.CENTER);
+        
+        // Add button
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setBackground(Theme.CREAM);
+        
+        JButton importButton = createStyledButton("Import Recipes...", Theme.TERRACOTTA);
+        importButton.addActionListener(e -> importRecipes());
+        buttonPanel.add(importButton);
+        
+        JButton exportButton = createStyledButton("Export Recipes...", Theme.DARK_BROWN);
+        exportButton.addActionListener(e -> exportRecipes());
+        buttonPanel.add(exportButton);
+        
+        JButton mealPlanButton = createStyledButton("Meal Plan", Theme.BLUE);
+        mealPlanButton.addActionListener(e -> showMealPlan());
+        buttonPanel.add(mealPlanButton);
+        
+        JButton addButton = createStyledButton("Add New Recipe", Theme.SAGE);
+        addButton.addActionListener(e -> showAddRecipeDialog());
+        buttonPanel.add(addButton);
+        
+        controlPanel.add(buttonPanel, BorderLayout.EAST);
+        
+        header.add(controlPanel, BorderLayout.CENTER);
+        
+        return header;
+    }
+
+    private JPanel createRecipeDisplayArea() {
+        JPanel container = new JPanel(new BorderLayout());
+        container.setBackground(Theme.CREAM);
+        
+        // Only the rows inside the viewport are painted; every row shares one renderer
+        listModel = new RecipeListModel();
+        thumbnails = new ThumbnailCache(photos, THUMBNAIL_SIZE, THUMBNAIL_CACHE_BYTES, () -> recipeList.repaint());
+        cardRenderer = new RecipeCardRenderer(id -> repository.snapshot().isFavorite(id), thumbnails);
+        recipeList = new JList<Recipe>(listModel) {
+            protected void paintComponent(Graphics g) {
+                Diagnostics.Span span = Diagnostics.PAINT.start();
+                super.paintComponent(g);
+                span.end();
+            }
+        };
+        recipeList.setCellRenderer(cardRenderer);
+        recipeList.setBackground(Theme.CREAM);
+        recipeList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Fixed cell size keeps layout O(1) instead of measuring every recipe
+        recipeList.setFixedCellHeight(cardRenderer.getPreferredSize().height);
+        recipeList.setFixedCellWidth(400);
+        
+        RecipeListMouseHandler mouseHandler = new RecipeListMouseHandler();
+        recipeList.addMouseListener(mouseHandler);
+        recipeList.addMouseMotionListener(mouseHandler);
+        
+        JScrollPane scrollPane = new JScrollPane(recipeList);
+        scrollPane.setBackground(Theme.CREAM);
+        scrollPane.getViewport().setBackground(Theme.CREAM);
+        scrollPane.setBorder(Theme.NO_BORDER);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        
+        // Empty state
+        JLabel emptyLabel = new JLabel("No recipes found. Add your first recipe!", SwingConstants.CENTER);
+        emptyLabel.setFont(Theme.EMPTY_STATE);
+        emptyLabel.setForeground(Theme.DARK_BROWN);
+        
+        recipePanel = new JPanel(new CardLayout());
+        recipePanel.setBackground(Theme.CREAM);
+        recipePanel.add(scrollPane, "list");
+        recipePanel.add(emptyLabel, "empty");
+        
+        container.add(recipePanel, BorderLayout.CENTER);
+        
+        return container;
+    }
+
+    /** Shows the list, or the empty state when the current view has no recipes. */
+    private void refreshRecipeDisplay() {
+        CardLayout layout = (CardLayout) recipePanel.getLayout();
+        layout.show(recipePanel, listModel.getSize() == 0 ? "empty" : "list");
+    }
+
+    /**
+     * List model backed by the current filter result. No Swing components are
+     * created per recipe, and changes notify the JList of only the rows they
+     * touch, so it lays out and repaints just those.
+     *
+     * The first single-row change splits the rows into chunks that are views
+     * of the shared result; a change copies only the chunk it touches, so it
+     * costs the same however long the list is.
+     */
+    static class RecipeListModel extends AbstractListModel<Recipe> {
+        private static final int CHUNK_SIZE = 256;
+        
+        // Shared with whoever handed it over; never changed here
+        private List<Recipe> items = Collections.emptyList();
+        // Null until the first single-row change; then the rows, each chunk a view of items until changed
+        private List<List<Recipe>> chunks;
+        // Rows in the chunks before each chunk; the last value is the size
+        private int[] before;
+        
+        /**
+         * Replaces the rows with the given list, which must not change
+         * afterwards. Rows at the start and end that hold the same recipes as
+         * before are kept, so a search that changed one recipe reports only
+         * that row as changed.
+         */
+        void setRecipes(List<Recipe> recipes) {
+            int oldSize = getSize();
+            int newSize = recipes.size();
+            int start = 0;
+            while (start < oldSize && start < newSize && getElementAt(start) == recipes.get(start)) {
+                start++;
+            }
+            int oldEnd = oldSize;
+            int newEnd = newSize;
+            while (oldEnd > start && newEnd > start && getElementAt(oldEnd - 1) == recipes.get(newEnd - 1)) {
+                oldEnd--;
+                newEnd--;
+            }
+            if (start == oldEnd && start == newEnd) return;
+            
+            items = recipes;
+            chunks = null;
+            int changed = Math.min(oldEnd, newEnd);
+            if (changed > start) fireContentsChanged(this, start, changed - 1);
+            if (oldEnd > changed) fireIntervalRemoved(this, changed, oldEnd - 1);
+            if (newEnd > changed) fireIntervalAdded(this, changed, newEnd - 1);
+        }
+        
+        /**
+         * Follows a change to one recipe in a list in book order: its row is
+         * replaced, removed when {@code current} is null, or inserted where it
+         * belongs. {@code position} is the recipe's book position, taken before
+         * a delete, and {@code positionOf} gives the others'.
+         */
+        void patch(String id, int position, Recipe current, ToIntFunction<String> positionOf) {
+            int row = find(id, position, positionOf);
+            if (row >= 0 && current != null) {
+                set(row, current);
+            } else if (row >= 0) {
+                remove(row);
+            } else if (current != null) {
+                insert(-row - 1, current);
+            }
+        }
+        
+        /**
+         * The row showing the recipe, found by binary search on book position,
+         * or -(the row where it belongs) - 1.
+         */
+        int find(String id, int position, ToIntFunction<String> positionOf) {
+            int low = 0;
+            int high = getSize() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                String midId = getElementAt(mid).id;
+                if (midId.equals(id)) return mid;
+                if (positionOf.applyAsInt(midId) < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -low - 1;
+        }
+        
+        void insert(int index, Recipe recipe) {
+            int c = chunkOf(index);
+            List<Recipe> chunk = ownChunk(c);
+            chunk.add(index - before[c], recipe);
+            if (chunk.size() == 2 * CHUNK_SIZE) {
+                List<Recipe> upper = chunk.subList(CHUNK_SIZE, chunk.size());
+                chunks.add(c + 1, new ArrayList<>(upper));
+                upper.clear();
+            }
+            countRows();
+            fireIntervalAdded(this, index, index);
+        }
+        
+        void remove(int index) {
+            int c = chunkOf(index);
+            List<Recipe> chunk = ownChunk(c);
+            chunk.remove(index - before[c]);
+            if (chunk.isEmpty() && chunks.size() > 1) chunks.remove(c);
+            countRows();
+            fireIntervalRemoved(this, index, index);
+        }
+        
+        void set(int index, Recipe recipe) {
+            int c = chunkOf(index);
+            ownChunk(c).set(index - before[c], recipe);
+            fireContentsChanged(this, index, index);
+        }
+        
+        public int getSize() {
+            return chunks == null ? items.size() : before[chunks.size()];
+        }
+        
+        public Recipe getElementAt(int index) {
+            if (chunks == null) return items.get(index);
+            int c = chunkOf(index);
+            return chunks.get(c).get(index - before[c]);
+        }
+        
+        /** The chunk holding the row, or the last chunk for the row past the end. */
+        private int chunkOf(int row) {
+            if (chunks == null) split();
+            int low = 0;
+            int high = chunks.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (before[mid] <= row) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+        
+        /** Copies the chunk before its first change; until then it is a view of the shared result. */
+        private List<Recipe> ownChunk(int c) {
+            List<Recipe> chunk = chunks.get(c);
+            // Views from subList are never ArrayLists
+            if (!(chunk instanceof ArrayList)) {
+                chunk = new ArrayList<>(chunk);
+                chunks.set(c, chunk);
+            }
+            return chunk;
+        }
+        
+        private void split() {
+            chunks = new ArrayList<>();
+            for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+                chunks.add(items.subList(from, Math.min(from + CHUNK_SIZE, items.size())));
+            }
+            if (chunks.isEmpty()) chunks.add(new ArrayList<>());
+            countRows();
+        }
+        
+        private void countRows() {
+            if (before == null || before.length != chunks.size() + 1) before = new int[chunks.size() + 1];
+            for (int c = 0; c < chunks.size(); c++) {
+                before[c + 1] = before[c] + chunks.get(c).size();
+            }
+        }
+    }
+
+    /**
+     * A single recipe card that is re-filled for every visible row. The buttons
+     * are only painted here; clicks are routed by {@link RecipeListMouseHandler}.
+     * Row texts are kept for the rows recently shown, so repainting a row
+     * builds no strings and leaves the card's layout valid.
+     */
+    static class RecipeCardRenderer extends JPanel implements ListCellRenderer<Recipe> {
+        private static final int MAX_CACHED_TEXTS = 512;
+        // Characters of steps shown on either side of a match
+        private static final int SNIPPET_CONTEXT = 40;
+        
+        final JLabel photoLabel = new JLabel();
+        final JLabel favIcon = new JLabel("☆");
+        final JLabel nameLabel = new JLabel();
+        final JLabel categoryLabel = new JLabel();
+        final JLabel ingredientsLabel = new JLabel();
+        final JButton viewButton = createSmallButton("View", Theme.SAGE);
+        final JButton editButton = createSmallButton("Edit", Theme.BLUE);
+        final JButton deleteButton = createSmallButton("Delete", Theme.RED);
+        private final Predicate<String> isFavorite;
+        private final ThumbnailCache thumbnails;
+        private final ThumbnailIcon thumbnail;
+        private Map<String, PantryMatch> pantryMatches = Collections.emptyMap();
+        private final Map<String, String> categoryTexts = new HashMap<>();
+        // Keyed by the Recipe or PantryMatch itself; an edit or a new search gives new keys
+        private final Map<Object, String> ingredientTexts = new IdentityHashMap<>();
+        private String stepsQuery;
+        // Highlighted steps snippets for the steps query, or "" where the steps do not match
+        private final Map<Recipe, String> stepsTexts = new IdentityHashMap<>();
+        
+        RecipeCardRenderer(Predicate<String> isFavorite, ThumbnailCache thumbnails) {
+            super(new BorderLayout());
+            this.isFavorite = isFavorite;
+            this.thumbnails = thumbnails;
+            this.thumbnail = new ThumbnailIcon(thumbnails.thumbnailSize());
+            setBackground(Theme.CREAM);
+            setBorder(Theme.CARD_GAP);
+            
+            JPanel card = new JPanel(new BorderLayout(15, 10));
+            card.setBackground(Theme.WARM_WHITE);
+            card.setBorder(Theme.CARD_BORDER);
+            
+            // Left - Recipe info
+            JPanel infoPanel = new JPanel();
+            infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+            infoPanel.setBackground(Theme.WARM_WHITE);
+            
+            // Title with favorite star
+            JPanel titlePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+            titlePanel.setBackground(Theme.WARM_WHITE);
+            
+            favIcon.setFont(Theme.STAR);
+            nameLabel.setFont(Theme.CARD_TITLE);
+            nameLabel.setForeground(Theme.TERRACOTTA);
+            
+            titlePanel.add(favIcon);
+            titlePanel.add(nameLabel);
+            
+            categoryLabel.setFont(Theme.CATEGORY);
+            categoryLabel.setForeground(Theme.SAGE);
+            
+            ingredientsLabel.setFont(Theme.SMALL_TEXT);
+            ingredientsLabel.setForeground(Theme.DARK_BROWN);
+            
+            infoPanel.add(titlePanel);
+            infoPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+            infoPanel.add(categoryLabel);
+            infoPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+            infoPanel.add(ingredientsLabel);
+            
+            // Right - Action buttons
+            JPanel buttonPanel = new JPanel();
+            buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
+            buttonPanel.setBackground(Theme.WARM_WHITE);
+            
+            buttonPanel.add(viewButton);
+            buttonPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+            buttonPanel.add(editButton);
+            buttonPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+            buttonPanel.add(deleteButton);
+            
+            // Left - Photo
+            photoLabel.setIcon(thumbnail);
+            
+            card.add(photoLabel, BorderLayout.WEST);
+            card.add(infoPanel, BorderLayout.CENTER);
+            card.add(buttonPanel, BorderLayout.EAST);
+            add(card, BorderLayout.CENTER);
+        }
+        
+        public Component getListCellRendererComponent(JList<? extends Recipe> list, Recipe recipe,
+                                                      int index, boolean isSelected, boolean cellHasFocus) {
+            if (list != null) Diagnostics.CARDS_RENDERED.increment();
+            // Never decodes here; the list repaints once a queued thumbnail is ready
+            thumbnail.image = thumbnails.get(recipe.id);
+            boolean favorite = isFavorite.test(recipe.id);
+            favIcon.setText(favorite ? "★" : "☆");
+            favIcon.setForeground(favorite ? Theme.GOLD : Theme.LIGHT_GREY);
+            nameLabel.setText(recipe.name);
+            String category = categoryTexts.get(recipe.category);
+            if (category == null) {
+                if (categoryTexts.size() == MAX_CACHED_TEXTS) categoryTexts.clear();
+                category = "Category: " + recipe.category;
+                categoryTexts.put(recipe.category, category);
+            }
+            categoryLabel.setText(category);
+            PantryMatch match = pantryMatches.get(recipe.id);
+            String steps = match == null && stepsQuery != null ? stepsText(recipe) : "";
+            ingredientsLabel.setText(!steps.isEmpty() ? steps : ingredientText(match != null ? match : recipe));
+            return this;
+        }
+        
+        /**
+         * The part of the steps matching the steps query, highlighted. Found
+         * when a card is first painted, so only the recipes scrolled to read
+         * their steps.
+         */
+        private String stepsText(Recipe recipe) {
+            String text = stepsTexts.get(recipe);
+            if (text == null) {
+                if (stepsTexts.size() == MAX_CACHED_TEXTS) stepsTexts.clear();
+                StepIndex.Snippet snippet = StepIndex.snippet(recipe.readSteps(), stepsQuery, SNIPPET_CONTEXT);
+                text = snippet != null ? describeSnippet(snippet) : "";
+                stepsTexts.put(recipe, text);
+            }
+            return text;
+        }
+        
+        private String ingredientText(Object row) {
+            String text = ingredientTexts.get(row);
+            if (text == null) {
+                if (ingredientTexts.size() == MAX_CACHED_TEXTS) ingredientTexts.clear();
+                text = row instanceof PantryMatch ? describePantryMatch((PantryMatch) row)
+                    : "Ingredients: " + ((Recipe) row).getShortIngredients();
+                ingredientTexts.put(row, text);
+            }
+            return text;
+        }
+        
+        /** Shows pantry coverage instead of the ingredient preview for the recipes in the map. */
+        void setPantryMatches(Map<String, PantryMatch> pantryMatches) {
+            this.pantryMatches = pantryMatches;
+        }
+        
+        /**
+         * Shows where the steps match the lowercased, trimmed query instead of
+         * the ingredient preview, for recipes whose steps do; null for none.
+         */
+        void setStepsQuery(String stepsQuery) {
+            if (!Objects.equals(stepsQuery, this.stepsQuery)) stepsTexts.clear();
+            this.stepsQuery = stepsQuery;
+        }
+        
+        private static String describeSnippet(StepIndex.Snippet snippet) {
+            StringBuilder sb = new StringBuilder("<html>Steps: ");
+            if (snippet.cutBefore) sb.append("&hellip;");
+            int at = 0;
+            for (int[] highlight : snippet.highlights) {
+                appendEscaped(sb, snippet.text, at, highlight[0]);
+                sb.append("<b>");
+                appendEscaped(sb, snippet.text, highlight[0], highlight[1]);
+                sb.append("</b>");
+                at = highlight[1];
+            }
+            appendEscaped(sb, snippet.text, at, snippet.text.length());
+            if (snippet.cutAfter) sb.append("&hellip;");
+            return sb.append("</html>").toString();
+        }
+        
+        private static void appendEscaped(StringBuilder sb, String text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '<': sb.append("&lt;"); break;
+                    case '>': sb.append("&gt;"); break;
+                    case '&': sb.append("&amp;"); break;
+                    case '\n': sb.append(' '); break;
+                    default: sb.append(c);
+                }
+            }
+        }
+        
+        private static String describePantryMatch(PantryMatch match) {
+            if (match.missing.isEmpty()) {
+                return "You have all " + match.total + " ingredients";
+            }
+            StringBuilder sb = new StringBuilder("Have " + match.have + " of " + match.total + " - missing: ");
+            int shown = Math.min(3, match.missing.size());
+            for (int i = 0; i < shown; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(match.missing.get(i));
+            }
+            if (match.missing.size() > shown) {
+                sb.append(" (+" + (match.missing.size() - shown) + " more)");
+            }
+            return sb.toString();
+        }
+        
+        /** Lays the card out for the given cell and returns the child under the point. */
+        Component componentAt(Recipe recipe, Rectangle cell, Point p) {
+            getListCellRendererComponent(null, recipe, -1, false, false);
+            setBounds(0, 0, cell.width, cell.height);
+            layoutTree(this);
+            return SwingUtilities.getDeepestComponentAt(this, p.x - cell.x, p.y - cell.y);
+        }
+        
+        private void layoutTree(Container c) {
+            c.doLayout();
+            for (Component child : c.getComponents()) {
+                if (child instanceof Container) layoutTree((Container) child);
+            }
+        }
+    }
+
+    /** A fixed-size square showing a thumbnail centered, or a placeholder while there is none. */
+    private static final class ThumbnailIcon implements Icon {
+        private final int size;
+        Image image;
+        
+        ThumbnailIcon(int size) {
+            this.size = size;
+        }
+        
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image == null) {
+                g.setColor(Theme.LIGHT_ORANGE);
+                g.fillRoundRect(x, y, size, size, 12, 12);
+                return;
+            }
+            int width = image.getWidth(null);
+            int height = image.getHeight(null);
+            g.drawImage(image, x + (size - width) / 2, y + (size - height) / 2, null);
+        }
+        
+        public int getIconWidth() { return size; }
+        public int getIconHeight() { return size; }
+    }
+
+    /** Routes clicks on the painted card buttons to the matching recipe action. */
+    private class RecipeListMouseHandler extends MouseAdapter {
+        public void mouseClicked(MouseEvent e) {
+            if (!SwingUtilities.isLeftMouseButton(e)) return;
+            Recipe recipe = recipeAt(e.getPoint());
+            if (recipe == null) return;
+            
+            Component target = cardRenderer.componentAt(recipe, cellBounds(e.getPoint()), e.getPoint());
+            if (target == cardRenderer.favIcon) {
+                toggleFavorite(recipe);
+            } else if (target == cardRenderer.viewButton) {
+                showRecipeDetails(recipe);
+            } else if (target == cardRenderer.editButton) {
+                showEditRecipeDialog(recipe);
+            } else if (target == cardRenderer.deleteButton) {
+                deleteRecipe(recipe);
+            } else if (e.getClickCount() == 2) {
+                showRecipeDetails(recipe);
+            }
+        }
+        
+        public void mouseMoved(MouseEvent e) {
+            Recipe recipe = recipeAt(e.getPoint());
+            Component target = recipe == null ? null
+                : cardRenderer.componentAt(recipe, cellBounds(e.getPoint()), e.getPoint());
+            boolean clickable = target == cardRenderer.favIcon || target instanceof JButton;
+            recipeList.setCursor(clickable ? Theme.HAND : Cursor.getDefaultCursor());
+        }
+        
+        private Recipe recipeAt(Point p) {
+            Rectangle cell = cellBounds(p);
+            if (cell == null || !cell.contains(p)) return null;
+            return listModel.getElementAt(recipeList.locationToIndex(p));
+        }
+        
+        private Rectangle cellBounds(Point p) {
+            int index = recipeList.locationToIndex(p);
+            return index < 0 ? null : recipeList.getCellBounds(index, index);
+        }
+    }
+
+    private void toggleFavorite(Recipe recipe) {
+        repository.setFavorite(recipe.id, !repository.snapshot().isFavorite(recipe.id));
+        recipeChanged(recipe.id, recipe);
+    }
+
+    private static JButton createStyledButton(String text, Color bgColor) {
+        JButton btn = new JButton(text);
+        btn.setFont(Theme.LABEL);
+        btn.setBackground(bgColor);
+        btn.setForeground(Color.WHITE);
+        btn.setFocusPainted(false);
+        btn.setBorderPainted(false);
+        btn.setCursor(Theme.HAND);
+        btn.setPreferredSize(new Dimension(180, 40));
+        return btn;
+    }
+
+    private static JButton createSmallButton(String text, Color bgColor) {
+        JButton btn = new JButton(text);
+        btn.setFont(Theme.SMALL);
+        btn.setBackground(bgColor);
+        btn.setForeground(Color.WHITE);
+        btn.setFocusPainted(false);
+        btn.setBorderPainted(false);
+        btn.setCursor(Theme.HAND);
+        btn.setPreferredSize(new Dimension(100, 30));
+        btn.setMaximumSize(new Dimension(100, 30));
+        return btn;
+    }
+
+    private void showAddRecipeDialog() {
+        showRecipeDialog(null);
+    }
+
+    private void showEditRecipeDialog(Recipe recipe) {
+        showRecipeDialog(recipe);
+    }
+
+    private void showRecipeDialog(Recipe editRecipe) {
+        JDialog dialog = new JDialog(this, editRecipe == null ? "Add New Recipe" : "Edit Recipe", true);
+        dialog.setSize(600, 700);
+        dialog.setLocationRelativeTo(this);
+        
+        JPanel panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        panel.setBorder(Theme.DIALOG_PADDING);
+        panel.setBackground(Theme.CREAM);
+        
+        // Name
+        JLabel nameLabel = new JLabel("Recipe Name:");
+        nameLabel.setFont(Theme.LABEL);
+        JTextField nameField = new JTextField(editRecipe != null ? editRecipe.name : "");
+        nameField.setFont(Theme.TEXT);
+        
+        // Category
+        JLabel categoryLabel = new JLabel("Category:");
+        categoryLabel.setFont(Theme.LABEL);
+        String[] cats = Recipe.CATEGORIES.toArray(new String[0]);
+        JComboBox<String> categoryBox = new JComboBox<>(cats);
+        categoryBox.setFont(Theme.TEXT);
+        if (editRecipe != null) {
+            // Imported recipes may carry a category of their own
+            if (!Recipe.CATEGORIES.contains(editRecipe.category)) categoryBox.addItem(editRecipe.category);
+            categoryBox.setSelectedItem(editRecipe.category);
+        }
+        
+        // Ingredients
+        JLabel ingredientsLabel = new JLabel("Ingredients (one per line):");
+        ingredientsLabel.setFont(Theme.LABEL);
+        JTextArea ingredientsArea = new JTextArea(8, 40);
+        ingredientsArea.setFont(Theme.SMALL_TEXT);
+        ingredientsArea.setLineWrap(true);
+        ingredientsArea.setWrapStyleWord(true);
+        if (editRecipe != null) ingredientsArea.setText(String.join("\n", editRecipe.getIngredients()));
+        JScrollPane ingredientsScroll = new JScrollPane(ingredientsArea);
+        
+        // Steps
+        JLabel stepsLabel = new JLabel("Cooking Steps:");
+        stepsLabel.setFont(Theme.LABEL);
+        JTextArea stepsArea = new JTextArea(10, 40);
+        stepsArea.setFont(Theme.SMALL_TEXT);
+        stepsArea.setLineWrap(true);
+        stepsArea.setWrapStyleWord(true);
+        if (editRecipe != null) stepsArea.setText(editRecipe.getSteps());
+        JScrollPane stepsScroll = new JScrollPane(stepsArea);
+        
+        // Photo, copied into the photo directory only when the recipe is saved
+        JLabel photoLabel = new JLabel("Photo:");
+        photoLabel.setFont(Theme.LABEL);
+        boolean hasPhoto = editRecipe != null && photos.hasPhoto(editRecipe.id);
+        JLabel photoStatus = new JLabel(hasPhoto ? "Photo attached" : "No photo");
+        photoStatus.setFont(Theme.TEXT);
+        Path[] chosenPhoto = new Path[1];
+        boolean[] photoRemoved = new boolean[1];
+        
+        JButton choosePhotoButton = createSmallButton("Choose...", Theme.SAGE);
+        choosePhotoButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Choose Photo");
+            chooser.setFileFilter(new FileNameExtensionFilter("Images (JPEG, PNG, GIF, BMP)",
+                "jpg", "jpeg", "png", "gif", "bmp"));
+            if (chooser.showOpenDialog(dialog) != JFileChooser.APPROVE_OPTION) return;
+            chosenPhoto[0] = chooser.getSelectedFile().toPath();
+            photoRemoved[0] = false;
+            photoStatus.setText(chosenPhoto[0].getFileName().toString());
+        });
+        JButton removePhotoButton = createSmallButton("Remove", Theme.RED);
+        removePhotoButton.addActionListener(e -> {
+            chosenPhoto[0] = null;
+            photoRemoved[0] = true;
+            photoStatus.setText("No photo");
+        });
+        
+        JPanel photoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        photoPanel.setBackground(Theme.CREAM);
+        photoPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 40));
+        photoPanel.add(photoStatus);
+        photoPanel.add(choosePhotoButton);
+        photoPanel.add(removePhotoButton);
+        
+        // Buttons
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        buttonPanel.setBackground(Theme.CREAM);
+        
+        JButton saveButton = createStyledButton(editRecipe == null ? "Add Recipe" : "Save Changes", Theme.SAGE);
+        saveButton.addActionListener(e -> {
+            String name = nameField.getText().trim();
+            String category = (String) categoryBox.getSelectedItem();
+            String ingredientsText = ingredientsArea.getText().trim();
+            String steps = stepsArea.getText().trim();
+            
+            if (name.isEmpty() || ingredientsText.isEmpty() || steps.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Please fill in all fields!", 
+                    "Validation Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            List<String> ingredients = Arrays.asList(ingredientsText.split("\n"));
+            
+            Recipe saved;
+            if (editRecipe == null) {
+                saved = new Recipe(name, category, ingredients, steps);
+            } else {
+                // Stored recipes are values; the edit replaces the recipe under its id
+                saved = new Recipe(editRecipe.id, name, category, ingredients, steps);
+            }
+            
+            repository.save(saved);
+            try {
+                if (chosenPhoto[0] != null) {
+                    photos.setPhoto(saved.id, chosenPhoto[0]);
+                } else if (photoRemoved[0]) {
+                    photos.removePhoto(saved.id);
+                }
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(dialog, "The recipe was saved, but not its photo: " + ex.getMessage(),
+                    "Photo Error", JOptionPane.ERROR_MESSAGE);
+            }
+            thumbnails.invalidate(saved.id);
+            recipeChanged(saved.id, saved);
+            dialog.dispose();
+        });
+        
+        JButton cancelButton = createStyledButton("Cancel", Theme.GREY);
+        cancelButton.addActionListener(e -> dialog.dispose());
+        
+        buttonPanel.add(saveButton);
+        buttonPanel.add(cancelButton);
+        
+        // Add components
+        panel.add(nameLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(nameField);
+        panel.add(Box.createRigidArea(new Dimension(0, 15)));
+        panel.add(categoryLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(categoryBox);
+        panel.add(Box.createRigidArea(new Dimension(0, 15)));
+        panel.add(ingredientsLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(ingredientsScroll);
+        panel.add(Box.createRigidArea(new Dimension(0, 15)));
+        panel.add(stepsLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(stepsScroll);
+        panel.add(Box.createRigidArea(new Dimension(0, 15)));
+        panel.add(photoLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(photoPanel);
+        panel.add(Box.createRigidArea(new Dimension(0, 20)));
+        panel.add(buttonPanel);
+        
+        JScrollPane dialogScroll = new JScrollPane(panel);
+        dialogScroll.setBackground(Theme.CREAM);
+        dialogScroll.getViewport().setBackground(Theme.CREAM);
+        dialog.add(dialogScroll);
+        
+        dialog.setVisible(true);
+    }
+
+    private void showRecipeDetails(Recipe recipe) {
+        JDialog dialog = new JDialog(this, recipe.name, true);
+        dialog.setSize(600, 650);
+        dialog.setLocationRelativeTo(this);
+        
+        JPanel panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        panel.setBorder(Theme.DIALOG_PADDING);
+        panel.setBackground(Theme.WARM_WHITE);
+        
+        // Title
+        JLabel titleLabel = new JLabel(recipe.name);
+        titleLabel.setFont(Theme.HEADING);
+        titleLabel.setForeground(Theme.TERRACOTTA);
+        titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        JLabel categoryLabel = new JLabel("Category: " + recipe.category);
+        categoryLabel.setFont(Theme.SUBTITLE);
+        categoryLabel.setForeground(Theme.SAGE);
+        categoryLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        // Photo, swapped in once decoded
+        JLabel photoLabel = null;
+        if (photos.hasPhoto(recipe.id)) {
+            photoLabel = new JLabel("Loading photo...", SwingConstants.CENTER);
+            photoLabel.setFont(Theme.CATEGORY);
+            photoLabel.setForeground(Theme.SAGE);
+            photoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            loadDetailPhoto(recipe.id, photoLabel);
+        }
+        
+        // Ingredients
+        JLabel ingredientsTitle = new JLabel("Ingredients:");
+        ingredientsTitle.setFont(Theme.SECTION);
+        ingredientsTitle.setForeground(Theme.DARK_BROWN);
+        
+        JTextArea ingredientsArea = new JTextArea();
+        ingredientsArea.setFont(Theme.TEXT);
+        ingredientsArea.setEditable(false);
+        ingredientsArea.setBackground(Theme.WARM_WHITE);
+        ingredientsArea.setLineWrap(true);
+        ingredientsArea.setWrapStyleWord(true);
+        StringBuilder ingredientsText = new StringBuilder();
+        for (String ing : recipe.getIngredients()) {
+            ingredientsText.append("• ").append(ing).append("\n");
+        }
+        ingredientsArea.setText(ingredientsText.toString());
+        
+        // Steps
+        JLabel stepsTitle = new JLabel("Cooking Steps:");
+        stepsTitle.setFont(Theme.SECTION);
+        stepsTitle.setForeground(Theme.DARK_BROWN);
+        
+        JTextArea stepsArea = new JTextArea(recipe.getSteps());
+        stepsArea.setFont(Theme.TEXT);
+        stepsArea.setEditable(false);
+        stepsArea.setBackground(Theme.WARM_WHITE);
+        stepsArea.setLineWrap(true);
+        stepsArea.setWrapStyleWord(true);
+        
+        JScrollPane stepsScroll = new JScrollPane(stepsArea);
+        stepsScroll.setPreferredSize(new Dimension(500, 200));
+        
+        // Buttons
+        JButton planButton = createStyledButton("Add to Meal Plan", Theme.BLUE);
+        planButton.addActionListener(e -> {
+            mealPlan().add(recipe);
+            planButton.setText("In Meal Plan");
+            planButton.setEnabled(false);
+        });
+        JButton closeButton = createStyledButton("Close", Theme.SAGE);
+        closeButton.addActionListener(e -> dialog.dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        buttonPanel.setBackground(Theme.WARM_WHITE);
+        buttonPanel.add(planButton);
+        buttonPanel.add(closeButton);
+        
+        panel.add(titleLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+        panel.add(categoryLabel);
+        if (photoLabel != null) {
+            panel.add(Box.createRigidArea(new Dimension(0, 15)));
+            panel.add(photoLabel);
+        }
+        panel.add(Box.createRigidArea(new Dimension(0, 20)));
+        panel.add(ingredientsTitle);
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(ingredientsArea);
+        panel.add(Box.createRigidArea(new Dimension(0, 20)));
+        panel.add(stepsTitle);
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(stepsScroll);
+        panel.add(Box.createRigidArea(new Dimension(0, 20)));
+        panel.add(buttonPanel);
+        
+        JScrollPane scrollPane = new JScrollPane(panel);
+        scrollPane.setBackground(Theme.WARM_WHITE);
+        scrollPane.getViewport().setBackground(Theme.WARM_WHITE);
+        dialog.add(scrollPane);
+        
+        dialog.setVisible(true);
+    }
+
+    /** Imports a recipe file in the background, showing progress in a dialog that can cancel it. */
+    private void importRecipes() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Recipes");
+        chooser.setFileFilter(new FileNameExtensionFilter("Recipe files (CSV, JSON, text)",
+            "csv", "json", "jsonl", "txt", "md"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        
+        ProgressDialog dialog = new ProgressDialog("Importing " + file.getFileName(), "Reading recipes...");
+        SwingWorker<RecipeImporter.Result, RecipeImporter.Progress> worker =
+                new SwingWorker<RecipeImporter.Result, RecipeImporter.Progress>() {
+            protected RecipeImporter.Result doInBackground() throws IOException {
+                return new RecipeImporter(repository).importFile(file, RecipeImporter.Format.of(file),
+                    progress -> publish(progress));
+            }
+            
+            protected void process(List<RecipeImporter.Progress> updates) {
+                RecipeImporter.Progress latest = updates.get(updates.size() - 1);
+                if (latest.totalBytes > 0) dialog.setFraction((double) latest.bytesRead / latest.totalBytes);
+                dialog.setMessage(String.format("%,d recipes read", latest.recordsRead));
+            }
+            
+            protected void done() {
+                dialog.dispose();
+                filterRecipes();
+                if (isCancelled()) return;
+                try {
+                    RecipeImporter.Result result = get();
+                    JOptionPane.showMessageDialog(RecipeHaven.this, String.format(
+                        "Imported %,d recipes.%nSkipped %,d duplicates and %,d entries without a name.",
+                        result.imported, result.duplicates, result.invalid));
+                } catch (ExecutionException e) {
+                    showTransferError("import", file, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        dialog.onCancel(() -> worker.cancel(true));
+        worker.execute();
+        dialog.setVisible(true);
+    }
+
+    /** Exports the recipes in the current search and category filter to a file. */
+    private void exportRecipes() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Recipes");
+        chooser.setSelectedFile(new java.io.File("recipes.html"));
+        chooser.setFileFilter(new FileNameExtensionFilter("Printable page, CSV or JSON Lines (html, csv, jsonl)",
+            "html", "htm", "csv", "json", "jsonl"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        if (Files.exists(file) && JOptionPane.showConfirmDialog(this,
+                file.getFileName() + " already exists. Replace it?", "Export Recipes",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        
+        String searchText = searchField.getText();
+        String filter = currentFilter;
+        ProgressDialog dialog = new ProgressDialog("Exporting to " + file.getFileName(), "Writing recipes...");
+        // The list shows only the best matches; the export writes all of them
+        dialog.setIndeterminate();
+        SwingWorker<Integer, Integer> worker = new SwingWorker<Integer, Integer>() {
+            protected Integer doInBackground() throws IOException {
+                return new RecipeExporter(repository).exportFile(file, RecipeExporter.Format.of(file),
+                    searchText, filter, written -> publish(written));
+            }
+            
+            protected void process(List<Integer> updates) {
+                int written = updates.get(updates.size() - 1);
+                dialog.setMessage(String.format("%,d recipes written", written));
+            }
+            
+            protected void done() {
+                dialog.dispose();
+                if (isCancelled()) return;
+                try {
+                    JOptionPane.showMessageDialog(RecipeHaven.this,
+                        String.format("Exported %,d recipes to %s.", get(), file.getFileName()));
+                } catch (ExecutionException e) {
+                    showTransferError("export", file, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        dialog.onCancel(() -> worker.cancel(true));
+        worker.execute();
+        dialog.setVisible(true);
+    }
+
+    private void showTransferError(String action, Path file, Throwable cause) {
+        cause.printStackTrace();
+        JOptionPane.showMessageDialog(this,
+            "Could not " + action + " " + file.getFileName() + ": " + cause.getMessage(),
+            "Recipe Haven", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /** Decodes a photo for the details dialog off the EDT, scaled to the dialog, and shows it in the label. */
+    private void loadDetailPhoto(String id, JLabel label) {
+        new SwingWorker<BufferedImage, Void>() {
+            protected BufferedImage doInBackground() throws IOException {
+                return photos.read(id, DETAIL_PHOTO_WIDTH, DETAIL_PHOTO_HEIGHT);
+            }
+            
+            protected void done() {
+                try {
+                    label.setIcon(new ImageIcon(get()));
+                    label.setText(null);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    label.setText("Could not load the photo");
+                }
+            }
+        }.execute();
+    }
+
+    /** Opens the live timings and counters; bound to Ctrl+Shift+D. */
+    private void showDiagnostics() {
+        if (diagnosticsDialog == null) {
+            diagnosticsDialog = new JDialog(this, "Diagnostics", false);
+            // Disposing stops the panel's refresh timer until it is shown again
+            diagnosticsDialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+            diagnosticsDialog.add(new DiagnosticsPanel());
+            diagnosticsDialog.setSize(700, 300);
+            diagnosticsDialog.setLocationRelativeTo(this);
+        }
+        diagnosticsDialog.setVisible(true);
+    }
+
+    /** Opens the meal plan and its shopping list, which stay open beside the book. */
+    private void showMealPlan() {
+        if (mealPlanDialog == null) {
+            mealPlanDialog = new JDialog(this, "Meal Plan", false);
+            mealPlanDialog.add(mealPlan());
+            mealPlanDialog.setSize(900, 550);
+            mealPlanDialog.setLocationRelativeTo(this);
+        }
+        mealPlanDialog.setVisible(true);
+    }
+
+    /** The meal plan, kept for the session. */
+    private MealPlanPanel mealPlan() {
+        if (mealPlanPanel == null) {
+            mealPlanPanel = new MealPlanPanel(repository, () -> {
+                List<Recipe> recipes = new ArrayList<>(listModel.getSize());
+                for (int i = 0; i < listModel.getSize(); i++) {
+                    recipes.add(listModel.getElementAt(i));
+                }
+                return recipes;
+            });
+        }
+        return mealPlanPanel;
+    }
+
+    /** Non-modal progress window for a background import or export. */
+    private class ProgressDialog extends JDialog {
+        private final JLabel messageLabel;
+        private final JProgressBar progressBar = new JProgressBar(0, 1000);
+        private final JButton cancelButton = createStyledButton("Cancel", Theme.GREY);
+        
+        ProgressDialog(String title, String message) {
+            super(RecipeHaven.this, title, false);
+            setSize(400, 160);
+            setLocationRelativeTo(RecipeHaven.this);
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+            
+            JPanel panel = new JPanel(new BorderLayout(10, 10));
+            panel.setBorder(Theme.WINDOW_PADDING);
+            panel.setBackground(Theme.CREAM);
+            
+            messageLabel = new JLabel(message);
+            messageLabel.setFont(Theme.TEXT);
+            messageLabel.setForeground(Theme.DARK_BROWN);
+            
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttonPanel.setBackground(Theme.CREAM);
+            buttonPanel.add(cancelButton);
+            
+            panel.add(messageLabel, BorderLayout.NORTH);
+            panel.add(progressBar, BorderLayout.CENTER);
+            panel.add(buttonPanel, BorderLayout.SOUTH);
+            add(panel);
+        }
+        
+        void onCancel(Runnable action) {
+            cancelButton.addActionListener(e -> action.run());
+        }
+        
+        void setIndeterminate() {
+            progressBar.setIndeterminate(true);
+        }
+        
+        void setFraction(double fraction) {
+            progressBar.setValue((int) (fraction * progressBar.getMaximum()));
+        }
+        
+        void setMessage(String message) {
+            messageLabel.setText(message);
+        }
+    }
+
+    private void deleteRecipe(Recipe recipe) {
+        int confirm = JOptionPane.showConfirmDialog(this, 
+            "Are you sure you want to delete '" + recipe.name + "'?", 
+            "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        
+        if (confirm == JOptionPane.YES_OPTION) {
+            // Its place in the list, which the book forgets with it
+            int position = repository.position(recipe.id);
+            repository.delete(recipe.id);
+            try {
+                photos.removePhoto(recipe.id);
+            } catch (IOException e) {
+                showSaveError(e);
+            }
+            thumbnails.invalidate(recipe.id);
+            recipeChanged(recipe.id, position, null);
+        }
+    }
+
+    /**
+     * Brings the list up to date after one recipe was saved or (un)favorited.
+     */
+    private void recipeChanged(String id, Recipe current) {
+        recipeChanged(id, repository.position(id), current);
+    }
+    
+    /**
+     * Brings the list up to date after one recipe was saved, deleted or
+     * (un)favorited; {@code current} is null once it is deleted, and
+     * {@code position} its book position from before. A plain filtered list
+     * is patched in place, touching only that recipe's row. Ranked and pantry
+     * lists depend on other recipes too, and a search still in flight may
+     * predate the change, so those search again; the list model then still
+     * updates only the rows that differ.
+     */
+    private void recipeChanged(String id, int position, Recipe current) {
+        String searchText = searchField.getText();
+        boolean ranked = !searchText.trim().isEmpty() && !stepsCheckBox.isSelected();
+        if (ranked || !pantryField.getText().trim().isEmpty() || searchPipeline.isBusy()) {
+            filterRecipes();
+            return;
+        }
+        
+        Diagnostics.Span span = Diagnostics.REFRESH.start();
+        boolean shown = current != null
+            && repository.matches(current, searchText, currentFilter, stepsCheckBox.isSelected());
+        listModel.patch(id, position, shown ? current : null, repository::position);
+        refreshRecipeDisplay();
+        span.end(1);
+    }
+
+    /** Re-runs the current search and category filter right away. */
+    private void filterRecipes() {
+        searchPipeline.searchNow(buildQuery());
+    }
+
+    /** Re-runs the current search once typing pauses. */
+    private void scheduleSearch() {
+        searchPipeline.search(buildQuery());
+    }
+
+    /**
+     * Captures the current search text, filter and pantry; the query itself
+     * runs on the search thread. Without search text or pantry every recipe in
+     * the filter is listed in book order; search text lists the best matches,
+     * or every match in book order when steps are searched too, and a pantry
+     * the best covered recipes. Completed queries are timed as the search stage.
+     */
+    private Callable<SearchResult> buildQuery() {
+        Callable<SearchResult> query = chooseQuery();
+        return () -> {
+            Diagnostics.Span span = Diagnostics.SEARCH.start();
+            SearchResult result = query.call();
+            span.end(result.recipes.size());
+            return result;
+        };
+    }
+
+    private Callable<SearchResult> chooseQuery() {
+        String searchText = searchField.getText();
+        String filter = currentFilter;
+        boolean includeSteps = stepsCheckBox.isSelected();
+        List<String> pantry = new ArrayList<>();
+        for (String item : pantryField.getText().split(",")) {
+            if (!item.trim().isEmpty()) pantry.add(item.trim());
+        }
+        if (pantry.isEmpty() && searchText.trim().isEmpty()) {
+            return () -> new SearchResult(repository.search(searchText, filter), Collections.emptyMap(), null);
+        }
+        if (pantry.isEmpty() && includeSteps) {
+            String stepsQuery = searchText.toLowerCase().trim();
+            return () -> new SearchResult(repository.searchWithSteps(searchText, filter, Integer.MAX_VALUE),
+                Collections.emptyMap(), stepsQuery);
+        }
+        if (pantry.isEmpty()) {
+            return () -> new SearchResult(
+                repository.rankedSearch(searchText, filter, RANKED_RESULTS, SEARCH_BUDGET_MS),
+                Collections.emptyMap(), null);
+        }
+        return () -> {
+            List<Recipe> recipes = new ArrayList<>();
+            Map<String, PantryMatch> matches = new HashMap<>();
+            for (PantryMatch match : repository.matchPantry(pantry, searchText, filter, PANTRY_RESULTS)) {
+                recipes.add(match.recipe);
+                matches.put(match.recipe.id, match);
+            }
+            return new SearchResult(recipes, matches, null);
+        };
+    }
+
+    /**
+     * The recipes to list, how the pantry covers them when there is one, and
+     * the query their steps matched when steps were searched.
+     */
+    private static final class SearchResult {
+        final List<Recipe> recipes;
+        final Map<String, PantryMatch> pantryMatches;
+        final String stepsQuery;
+        
+        SearchResult(List<Recipe> recipes, Map<String, PantryMatch> pantryMatches, String stepsQuery) {
+            this.recipes = recipes;
+            this.pantryMatches = pantryMatches;
+            this.stepsQuery = stepsQuery;
+        }
+    }
+
+    private void loadData() {
+        RecipeStorage storage = new JournalStorage(Paths.get(DATA_FILE), Paths.get(LOG_FILE),
+            Paths.get(LEGACY_DATA_FILE), Paths.get(LEGACY_FAVORITES_FILE), this::showSaveError);
+        try {
+            Diagnostics.Span span = Diagnostics.LOAD.start();
+            repository = new RecipeRepository(storage);
+            span.end(repository.snapshot().recipes.size());
+        } catch (JournalStorage.LockedException e) {
+            // Two processes writing one journal would corrupt it, so do not open it at all
+            JOptionPane.showMessageDialog(null, e.getMessage() + ".\nClose it and start RecipeHaven again.",
+                "Recipe Book In Use", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        } catch (Exception e) {
+            e.printStackTrace();
+            loadError = "Could not load recipes (" + e.getMessage() + "); changes will not be saved";
+            repository = openEmpty();
+        }
+        
+        photos = new PhotoStore(Paths.get(PHOTO_DIR));
+        try {
+            photos.load();
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (loadError == null) loadError = "Could not read recipe photos (" + e.getMessage() + ")";
+        }
+    }
+
+    private static RecipeRepository openEmpty() {
+        try {
+            return new RecipeRepository(new RecipeStorage.Memory());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void showSaveError(IOException e) {
+        e.printStackTrace();
+        SwingUtilities.invokeLater(() -> statusLabel.setText("Error saving data: " + e.getMessage()));
+    }
+
+    /** Writes out pending changes before the window goes away. */
+    private void closeRepository() {
+        try {
+            repository.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Opens the window, or with {@code --server [port]} serves the book over HTTP instead. */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            RecipeServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        try {
+            Diagnostics.registerMBeans();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        SwingUtilities.invokeLater(() -> {
+            RecipeHaven app = new RecipeHaven();
+            app.setVisible(true);
+        });
+    }
+}
@@ -0,0 +1,700 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Imports recipe collections from CSV, JSON or plain text into a
+ * {@link RecipeRepository}.
+ *
+ * The input is parsed as a stream on the calling thread, in chunks of
+ * {@value #CHUNK_SIZE} records. Each chunk is normalized on the common
+ * fork-join pool while the next one is parsed, with a bounded number of chunks
+ * in flight. Chunks are merged back in input order, dropping records without a
+ * name and duplicates of recipes already in the book or earlier in the input.
+ * Everything accepted is saved with one {@link RecipeRepository#saveAll}, so
+ * the book is persisted and re-indexed once however large the input is.
+ *
+ * An interrupt of the importing thread cancels the import before anything is
+ * saved.
+ *
+ * Formats:
+ * <ul>
+ *   <li>CSV: a header row naming the columns name, category, ingredients and
+ *       steps in any order, with RFC 4180 quoting, so fields may span lines.
+ *       Ingredients are separated by newlines, or by semicolons in a cell
+ *       without line breaks.
+ *   <li>JSON: an array of objects, or one object after another as in JSON
+ *       Lines, with string fields name, category and steps and an ingredients
+ *       array (or a string with one ingredient per line). Other fields are
+ *       ignored.
+ *   <li>Text: every recipe starts with a "# Name" line, followed by an optional
+ *       "Category:" line, an "Ingredients:" section with one ingredient per
+ *       line and a "Steps:" section running up to the next recipe. Step lines
+ *       starting with "#" or a backslash are escaped with a backslash.
+ * </ul>
+ */
+class RecipeImporter {
+    static final int CHUNK_SIZE = 1000;
+
+    /** Category given to recipes whose input has none. */
+    static final String NO_CATEGORY = "Uncategorized";
+
+    enum Format {
+        CSV, JSON, TEXT;
+
+        /** Guesses the format from the file name; anything unknown is read as text. */
+        static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".json") || name.endsWith(".jsonl")) return JSON;
+            return TEXT;
+        }
+    }
+
+    static class Progress {
+        final long bytesRead;
+        final long totalBytes;
+        final int recordsRead;
+
+        Progress(long bytesRead, long totalBytes, int recordsRead) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.recordsRead = recordsRead;
+        }
+    }
+
+    static class Result {
+        final int imported;
+        final int duplicates;
+        final int invalid;
+
+        Result(int imported, int duplicates, int invalid) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+        }
+    }
+
+    /** A record as parsed, before normalization. */
+    private static class RawRecipe {
+        String name;
+        String category;
+        final List<String> ingredients = new ArrayList<>();
+        String steps;
+    }
+
+    /** A normalized record and its duplicate key; the recipe is null if the record is unusable. */
+    private static class Normalized {
+        final Recipe recipe;
+        final String key;
+
+        Normalized(Recipe recipe, String key) {
+            this.recipe = recipe;
+            this.key = key;
+        }
+    }
+
+    private interface RecordReader {
+        /** The next record, or null at the end of the input. */
+        RawRecipe next() throws IOException;
+    }
+
+    private final RecipeRepository repository;
+
+    RecipeImporter(RecipeRepository repository) {
+        this.repository = repository;
+    }
+
+    Result importFile(Path file, Format format, Consumer<Progress> progress) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return importFrom(in, Files.size(file), format, progress);
+        }
+    }
+
+    /**
+     * Imports UTF-8 input of the given format.
+     *
+     * @param totalBytes the input size for progress reports, or -1 if unknown
+     * @param progress   called on the importing thread after every chunk
+     */
+    Result importFrom(InputStream in, long totalBytes, Format format, Consumer<Progress> progress)
+            throws IOException {
+        CountingInputStream counter = new CountingInputStream(in);
+        Chars chars = new Chars(new InputStreamReader(counter, StandardCharsets.UTF_8));
+        RecordReader records = format == Format.CSV ? new CsvReader(chars)
+            : format == Format.JSON ? new JsonReader(chars)
+            : new TextReader(chars);
+
+        Merge merge = new Merge(existingKeys());
+        int maxInFlight = ForkJoinPool.getCommonPoolParallelism() + 1;
+        Deque<Future<List<Normalized>>> inFlight = new ArrayDeque<>();
+        int recordsRead = 0;
+        try {
+            List<RawRecipe> chunk = new ArrayList<>(CHUNK_SIZE);
+            RawRecipe raw;
+            while ((raw = records.next()) != null) {
+                chunk.add(raw);
+                recordsRead++;
+                if (chunk.size() < CHUNK_SIZE) continue;
+
+                inFlight.add(submit(chunk));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                while (inFlight.size() >= maxInFlight) {
+                    merge.add(await(inFlight.poll()));
+                }
+                progress.accept(new Progress(counter.count, totalBytes, recordsRead));
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Import cancelled");
+                }
+            }
+            if (!chunk.isEmpty()) inFlight.add(submit(chunk));
+            while (!inFlight.isEmpty()) {
+                merge.add(await(inFlight.poll()));
+            }
+            progress.accept(new Progress(counter.count, totalBytes, recordsRead));
+        } finally {
+            for (Future<List<Normalized>> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+
+        repository.saveAll(merge.accepted);
+        return new Result(merge.accepted.size(), merge.duplicates, merge.invalid);
+    }
+
+    /**
+     * Reads one recipe from a JSON object with the fields an import reads,
+     * normalized the same way, and gives it the id. Returns null if the object
+     * has no name.
+     *
+     * @throws IOException if the input is not a single JSON object
+     */
+    static Recipe readJson(Reader in, String id) throws IOException {
+        JsonReader reader = new JsonReader(new Chars(in));
+        RawRecipe raw = reader.next();
+        if (raw == null || reader.next() != null) throw new IOException("Expected one recipe object");
+        Recipe recipe = normalize(raw).recipe;
+        return recipe == null ? null
+            : new Recipe(id, recipe.name, recipe.category, recipe.getIngredients(), recipe.getSteps());
+    }
+
+    /** Keys of the recipes already in the book. */
+    private Set<String> existingKeys() {
+        return repository.snapshot().recipes.parallelStream()
+            .map(recipe -> key(recipe.name, recipe.readIngredients()))
+            .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static Future<List<Normalized>> submit(List<RawRecipe> chunk) {
+        return ForkJoinPool.commonPool().submit(() -> {
+            List<Normalized> normalized = new ArrayList<>(chunk.size());
+            for (RawRecipe raw : chunk) {
+                normalized.add(normalize(raw));
+            }
+            return normalized;
+        });
+    }
+
+    private static List<Normalized> await(Future<List<Normalized>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import cancelled");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not import recipes", e.getCause());
+        }
+    }
+
+    /** Accepts normalized chunks in input order, keeping the first of each duplicate. */
+    private static class Merge {
+        final Set<String> seen;
+        final List<Recipe> accepted = new ArrayList<>();
+        int duplicates;
+        int invalid;
+
+        Merge(Set<String> seen) {
+            this.seen = seen;
+        }
+
+        void add(List<Normalized> chunk) {
+            for (Normalized normalized : chunk) {
+                if (normalized.recipe == null) {
+                    invalid++;
+                } else if (!seen.add(normalized.key)) {
+                    duplicates++;
+                } else {
+                    accepted.add(normalized.recipe);
+                }
+            }
+        }
+    }
+
+    // Normalization
+
+    private static Normalized normalize(RawRecipe raw) {
+        String name = clean(raw.name);
+        if (name.isEmpty()) return new Normalized(null, null);
+
+        String category = clean(raw.category);
+        if (category.isEmpty()) {
+            category = NO_CATEGORY;
+        } else {
+            for (String known : Recipe.CATEGORIES) {
+                if (known.equalsIgnoreCase(category)) category = known;
+            }
+        }
+
+        List<String> ingredients = new ArrayList<>(raw.ingredients.size());
+        for (String line : raw.ingredients) {
+            String ingredient = clean(stripBullet(line));
+            if (!ingredient.isEmpty()) ingredients.add(ingredient);
+        }
+
+        String steps = raw.steps == null ? "" : raw.steps.replace("\r\n", "\n").replace('\r', '\n').trim();
+        return new Normalized(new Recipe(name, category, ingredients, steps), key(name, ingredients));
+    }
+
+    /** Recipes with the same name and ingredients, ignoring case and spacing, are duplicates. */
+    private static String key(String name, List<String> ingredients) {
+        StringBuilder key = new StringBuilder(clean(name).toLowerCase(Locale.ROOT));
+        for (String ingredient : ingredients) {
+            key.append('\n').append(clean(ingredient).toLowerCase(Locale.ROOT));
+        }
+        return key.toString();
+    }
+
+    /** Trims and collapses every run of whitespace into one space. */
+    private static String clean(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String stripBullet(String line) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("- ") || trimmed.startsWith("* ") || trimmed.startsWith("•")) {
+            return trimmed.substring(1);
+        }
+        return trimmed;
+    }
+
+    // Parsing
+
+    /** Counts the bytes pulled from the input, for progress reports. */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /** Unsynchronized buffered character input with one character of lookahead and line counting. */
+    private static class Chars {
+        private final Reader in;
+        private final char[] buf = new char[64 * 1024];
+        private int pos;
+        private int limit;
+        int line = 1;
+
+        Chars(Reader in) throws IOException {
+            this.in = in;
+            // Skip a byte order mark
+            if (peek() == '\uFEFF') pos++;
+        }
+
+        int peek() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos];
+        }
+
+        int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                pos++;
+                if (c == '\n') line++;
+            }
+            return c;
+        }
+
+        /** The next line without its terminator, or null at the end of the input. */
+        String readLine() throws IOException {
+            if (peek() < 0) return null;
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = read()) >= 0 && c != '\n') {
+                if (c != '\r') sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at line " + line);
+        }
+    }
+
+    private static class CsvReader implements RecordReader {
+        private static final String[] COLUMNS = {"name", "category", "ingredients", "steps"};
+
+        private final Chars in;
+        // Row position of each of COLUMNS, -1 where absent
+        private final int[] columns = new int[COLUMNS.length];
+
+        CsvReader(Chars in) throws IOException {
+            this.in = in;
+            Arrays.fill(columns, -1);
+            List<String> header = readRow();
+            if (header == null) return;
+            for (int i = 0; i < header.size(); i++) {
+                String title = header.get(i).trim().toLowerCase(Locale.ROOT);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    if (COLUMNS[c].equals(title)) columns[c] = i;
+                }
+            }
+            if (columns[0] < 0) throw new IOException("CSV header has no \"name\" column");
+        }
+
+        public RawRecipe next() throws IOException {
+            if (columns[0] < 0) return null;
+            List<String> row;
+            do {
+                row = readRow();
+                if (row == null) return null;
+            } while (row.size() == 1 && row.get(0).trim().isEmpty());
+
+            RawRecipe raw = new RawRecipe();
+            raw.name = cell(row, 0);
+            raw.category = cell(row, 1);
+            // One ingredient per line; single-line cells may use semicolons instead
+            String ingredients = cell(row, 2);
+            for (String ingredient : ingredients.split(ingredients.indexOf('\n') >= 0 ? "\n" : ";")) {
+                raw.ingredients.add(ingredient);
+            }
+            raw.steps = cell(row, 3);
+            return raw;
+        }
+
+        private String cell(List<String> row, int column) {
+            int at = columns[column];
+            return at >= 0 && at < row.size() ? row.get(at) : "";
+        }
+
+        /** One record's fields, or null at the end of the input. */
+        private List<String> readRow() throws IOException {
+            int c = in.read();
+            if (c < 0) return null;
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) throw in.error("Unterminated quoted field");
+                    if (c == '"') {
+                        if (in.peek() == '"') {
+                            field.append('"');
+                            in.read();
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c < 0) {
+                    row.add(field.toString());
+                    return row;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+
+    private static class JsonReader implements RecordReader {
+        private final Chars in;
+        private boolean started;
+        private boolean inArray;
+        private boolean done;
+
+        JsonReader(Chars in) {
+            this.in = in;
+        }
+
+        public RawRecipe next() throws IOException {
+            if (done) return null;
+            int c = skipWhitespace();
+            if (!started) {
+                started = true;
+                if (c == '[') {
+                    in.read();
+                    inArray = true;
+                    c = skipWhitespace();
+                    if (c == ']') return end();
+                }
+            } else if (inArray) {
+                if (c == ']') return end();
+                if (c != ',') throw in.error("Expected ',' or ']'");
+                in.read();
+                c = skipWhitespace();
+            }
+            if (c < 0) {
+                if (inArray) throw in.error("Unexpected end of input");
+                done = true;
+                return null;
+            }
+            if (c != '{') throw in.error("Expected a recipe object");
+            return readRecipe();
+        }
+
+        private RawRecipe end() throws IOException {
+            in.read();
+            if (skipWhitespace() >= 0) throw in.error("Unexpected content after the recipe array");
+            done = true;
+            return null;
+        }
+
+        private RawRecipe readRecipe() throws IOException {
+            RawRecipe raw = new RawRecipe();
+            in.read();
+            int c = skipWhitespace();
+            if (c == '}') {
+                in.read();
+                return raw;
+            }
+            while (true) {
+                String key = readString().toLowerCase(Locale.ROOT);
+                if (skipWhitespace() != ':') throw in.error("Expected ':'");
+                in.read();
+                skipWhitespace();
+                switch (key) {
+                    case "name":
+                        raw.name = readText();
+                        break;
+                    case "category":
+                        raw.category = readText();
+                        break;
+                    case "steps":
+                        raw.steps = readText();
+                        break;
+                    case "ingredients":
+                        readIngredients(raw.ingredients);
+                        break;
+                    default:
+                        skipValue();
+                }
+                c = skipWhitespace();
+                in.read();
+                if (c == '}') return raw;
+                if (c != ',') throw in.error("Expected ',' or '}'");
+                skipWhitespace();
+            }
+        }
+
+        private void readIngredients(List<String> ingredients) throws IOException {
+            if (in.peek() == '[') {
+                in.read();
+                if (skipWhitespace() == ']') {
+                    in.read();
+                    return;
+                }
+                while (true) {
+                    String ingredient = readText();
+                    if (ingredient != null) ingredients.add(ingredient);
+                    int c = skipWhitespace();
+                    in.read();
+                    if (c == ']') return;
+                    if (c != ',') throw in.error("Expected ',' or ']'");
+                    skipWhitespace();
+                }
+            }
+            String text = readText();
+            if (text != null) ingredients.addAll(Arrays.asList(text.split("\n")));
+        }
+
+        /** A string, a number or boolean as written, or null for anything else. */
+        private String readText() throws IOException {
+            int c = in.peek();
+            if (c == '"') return readString();
+            if (c == '{' || c == '[') {
+                skipValue();
+                return null;
+            }
+            String literal = readLiteral();
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() throws IOException {
+            if (in.read() != '"') throw in.error("Expected a string");
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = in.read();
+                if (c < 0) throw in.error("Unterminated string");
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+                int escape = in.read();
+                switch (escape) {
+                    case '"': case '\\': case '/': sb.append((char) escape); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(in.read(), 16);
+                            if (digit < 0) throw in.error("Bad \\u escape");
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        throw in.error("Bad escape");
+                }
+            }
+        }
+
+        private String readLiteral() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.peek()) >= 0 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+                sb.append((char) in.read());
+            }
+            if (sb.length() == 0) throw in.error("Unexpected character");
+            return sb.toString();
+        }
+
+        private void skipValue() throws IOException {
+            int c = in.peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                int close = c == '{' ? '}' : ']';
+                in.read();
+                if (skipWhitespace() == close) {
+                    in.read();
+                    return;
+                }
+                while (true) {
+                    if (close == '}') {
+                        readString();
+                        if (skipWhitespace() != ':') throw in.error("Expected ':'");
+                        in.read();
+                        skipWhitespace();
+                    }
+                    skipValue();
+                    int next = skipWhitespace();
+                    in.read();
+                    if (next == close) return;
+                    if (next != ',') throw in.error("Expected ',' or '" + (char) close + "'");
+                    skipWhitespace();
+                }
+            } else {
+                readLiteral();
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            while ((c = in.peek()) >= 0 && Character.isWhitespace(c)) {
+                in.read();
+            }
+            return c;
+        }
+    }
+
+    private static class TextReader implements RecordReader {
+        private final Chars in;
+        // The title line that ended the previous recipe
+        private String nextTitle;
+
+        TextReader(Chars in) {
+            this.in = in;
+        }
+
+        public RawRecipe next() throws IOException {
+            String line;
+            while (nextTitle == null) {
+                line = in.readLine();
+                if (line == null) return null;
+                if (line.startsWith("# ")) nextTitle = line;
+            }
+
+            RawRecipe raw = new RawRecipe();
+            raw.name = nextTitle.substring(1);
+            nextTitle = null;
+            boolean inIngredients = false;
+            StringBuilder steps = null;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("# ")) {
+                    nextTitle = line;
+                    break;
+                }
+                if (steps != null) {
+                    steps.append(line.startsWith("\\") ? line.substring(1) : line).append('\n');
+                    continue;
+                }
+                String trimmed = line.trim();
+                String lower = trimmed.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("category:")) {
+                    raw.category = trimmed.substring("category:".length());
+                } else if (lower.equals("ingredients:")) {
+                    inIngredients = true;
+                } else if (lower.equals("steps:")) {
+                    steps = new StringBuilder();
+                } else if (inIngredients) {
+                    raw.ingredients.add(line);
+                }
+            }
+            raw.steps = steps == null ? "" : steps.toString();
+            return raw;
+        }
+    }
+}
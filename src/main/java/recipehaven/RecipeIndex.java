@@ -0,0 +1,941 @@
+package recipehaven;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over the searchable recipe fields (name, category
+ * and ingredients). Lowercased fields and their tokens are computed once when a
+ * recipe is added or edited, so a search only touches the vocabulary, the
+ * posting lists of the matching terms and the candidate recipes.
+ *
+ * Substring queries are resolved through an n-gram index over the vocabulary:
+ * every term is listed under each of its 1-, 2- and 3-character substrings, so
+ * the terms containing a query piece are found by intersecting a few sorted
+ * term-id lists instead of scanning every term.
+ *
+ * Results are exactly those of a {@code String.contains} scan over the
+ * lowercased fields, returned in insertion order.
+ *
+ * Ingredient lines repeat across a book, so each distinct lowercased line is
+ * stored once and parsed once into its canonical {@link Ingredient}; entries
+ * keep int ids. Every canonical ingredient has a bitset of the entry slots that
+ * use it, which turns ingredient queries into bitset intersections.
+ *
+ * Category filters work the same way: every category, and the favorites, have
+ * a bitset of their slots. Queries take the filter's bitset and intersect it
+ * with their candidates, so a category or favorites view without search text
+ * visits only the recipes it lists.
+ *
+ * Steps are only indexed once {@link #indexSteps} is called, by the first
+ * search that includes them, in a positional {@link StepIndex} over the same
+ * slots; from then on changes keep it current.
+ *
+ * {@link #rank} scores matches instead, tolerating typos: each query piece is
+ * matched against the vocabulary exactly, as a prefix, as a substring and,
+ * through a {@link BkTree} of the vocabulary's words, within one or two edits.
+ * Entries remember which fields each of their terms came from, so name matches
+ * can outweigh category and ingredient matches.
+ *
+ * The index is not thread-safe. Searches do not modify it, so
+ * {@link RecipeRepository} lets them share a read lock and takes the write lock
+ * for changes. Searches stop early with a {@link CancellationException} when
+ * the searching thread is interrupted.
+ */
+class RecipeIndex {
+    private static final int MAX_GRAM = 3;
+
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    // Fields a term occurs in, as bits
+    private static final int NAME = 1;
+    private static final int CATEGORY = 2;
+    private static final int INGREDIENT = 4;
+
+    private static final float NAME_WEIGHT = 3;
+    private static final float CATEGORY_WEIGHT = 2;
+    private static final float INGREDIENT_WEIGHT = 1;
+
+    // How well a term matches a query piece
+    private static final float EXACT = 1;
+    private static final float PREFIX = 0.75f;
+    private static final float ONE_EDIT = 0.6f;
+    private static final float SUBSTRING = 0.5f;
+    private static final float TWO_EDITS = 0.4f;
+
+    // Insertion order is list order; edits keep their slot
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // Entries by slot, null where one was removed
+    private final List<Entry> slots = new ArrayList<>();
+
+    // Term dictionary; ids are never reused so gram lists stay sorted
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    // Sorted entry slots by term id
+    private final List<IntList> postings = new ArrayList<>();
+    private final Map<String, IntList> gramTerms = new HashMap<>();
+    // Term ids by their letters-only word, for typo-tolerant lookups
+    private final BkTree words = new BkTree();
+    private int liveTerms;
+
+    // Distinct lowercased ingredient lines and the canonical ingredient each names
+    private final Map<String, Integer> lineIds = new HashMap<>();
+    private final List<String> lines = new ArrayList<>();
+    private int[] lineIngredients = new int[1024];
+
+    // Entry slots by IngredientDictionary id
+    private final List<BitSet> ingredientSlots = new ArrayList<>();
+    // Entry slots by category, and of the favorites
+    private final Map<String, BitSet> categorySlots = new HashMap<>();
+    private final BitSet favoriteSlots = new BitSet();
+    // Built on demand; kept through rebuilds once built
+    private final StepIndex steps = new StepIndex();
+    private boolean stepsIndexed;
+
+    private static class Entry {
+        Recipe recipe;
+        final int slot;
+        String category;
+        // Lowercased name and category
+        String[] fields;
+        int[] lineRefs;
+        // Sorted, distinct
+        int[] ingredientIds;
+        int[] termRefs;
+        // Field bits of each term ref
+        byte[] termFields;
+
+        Entry(Recipe recipe, int slot) {
+            this.recipe = recipe;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Drops everything and indexes the recipes in list order, marking those
+     * with a favorite id. Lowercasing and tokenizing, the bulk of the work, run
+     * on the common fork-join pool.
+     */
+    void rebuild(List<Recipe> recipes, Set<String> favoriteIds) {
+        entries.clear();
+        termIds.clear();
+        terms.clear();
+        postings.clear();
+        gramTerms.clear();
+        words.clear();
+        liveTerms = 0;
+        slots.clear();
+        lineIds.clear();
+        lines.clear();
+        ingredientSlots.clear();
+        categorySlots.clear();
+        favoriteSlots.clear();
+
+        List<Analysis> analyses = recipes.parallelStream()
+            .map(RecipeIndex::analyze)
+            .collect(Collectors.toList());
+        for (int i = 0; i < recipes.size(); i++) {
+            Recipe recipe = recipes.get(i);
+            Entry entry = new Entry(recipe, slots.size());
+            slots.add(entry);
+            entries.put(recipe.id, entry);
+            indexFields(entry, analyses.get(i));
+        }
+        for (String id : favoriteIds) {
+            setFavorite(id, true);
+        }
+        if (stepsIndexed) {
+            stepsIndexed = false;
+            indexSteps();
+        }
+    }
+
+    void add(Recipe recipe) {
+        Entry entry = new Entry(recipe, slots.size());
+        slots.add(entry);
+        entries.put(recipe.id, entry);
+        indexFields(entry, analyze(recipe));
+        if (stepsIndexed) steps.add(entry.slot, recipe.readSteps());
+    }
+
+    /**
+     * Re-indexes an edited recipe, keeping its position. The recipe replaces the
+     * indexed one with the same id, which may be the same object edited in place.
+     */
+    void update(Recipe recipe) {
+        Entry entry = entries.get(recipe.id);
+        if (entry == null) {
+            add(recipe);
+            return;
+        }
+        unindexFields(entry);
+        entry.recipe = recipe;
+        indexFields(entry, analyze(recipe));
+        if (stepsIndexed) steps.update(entry.slot, recipe.readSteps());
+        compactIfSparse();
+    }
+
+    void remove(Recipe recipe) {
+        Entry entry = entries.remove(recipe.id);
+        if (entry != null) {
+            slots.set(entry.slot, null);
+            favoriteSlots.clear(entry.slot);
+            unindexFields(entry);
+            if (stepsIndexed) steps.remove(entry.slot);
+            compactIfSparse();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Indexes the steps of every recipe, unless they already are. Reading and
+     * splitting the steps, the bulk of the work, run on the common fork-join
+     * pool.
+     */
+    void indexSteps() {
+        if (stepsIndexed) return;
+        steps.clear();
+        List<Entry> live = new ArrayList<>(entries.values());
+        List<List<String>> words = live.parallelStream()
+            .map(entry -> StepIndex.words(entry.recipe.readSteps()))
+            .collect(Collectors.toList());
+        for (int i = 0; i < live.size(); i++) {
+            steps.add(live.get(i).slot, words.get(i));
+        }
+        steps.trim();
+        stepsIndexed = true;
+    }
+
+    /** Bytes taken by the step posting lists. */
+    long stepPostingBytes() {
+        return steps.postingBytes();
+    }
+
+    /** Distinct words in the indexed steps, counting words of removed steps until a rebuild. */
+    int stepTermCount() {
+        return steps.termCount();
+    }
+
+    /** Marks the recipe as a favorite or not; ids not in the index are ignored. */
+    void setFavorite(String id, boolean favorite) {
+        Entry entry = entries.get(id);
+        if (entry != null) favoriteSlots.set(entry.slot, favorite);
+    }
+
+    /**
+     * The slots of the recipes in the category filter ({@link RecipeRepository#ALL},
+     * {@link RecipeRepository#FAVORITES} or a category), to pass to the queries
+     * below, or null when the filter accepts every recipe. The bitset is the
+     * index's own and only valid until the next change.
+     */
+    BitSet slotsIn(String filter) {
+        if (filter.equals(RecipeRepository.ALL)) return null;
+        if (filter.equals(RecipeRepository.FAVORITES)) return favoriteSlots;
+        BitSet inCategory = categorySlots.get(filter);
+        return inCategory != null ? inCategory : new BitSet();
+    }
+
+    /** Like {@link #slotsIn(String)}, but the favorites are the given ids rather than those marked. */
+    BitSet slotsIn(String filter, Collection<String> favoriteIds) {
+        if (!filter.equals(RecipeRepository.FAVORITES)) return slotsIn(filter);
+        BitSet favorites = new BitSet(slots.size());
+        for (String id : favoriteIds) {
+            Entry entry = entries.get(id);
+            if (entry != null) favorites.set(entry.slot);
+        }
+        return favorites;
+    }
+
+    /** The indexed recipe with the id, or null. */
+    Recipe get(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.recipe : null;
+    }
+
+    /** The recipe's place in insertion order, comparable between recipes, or -1. */
+    int position(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.slot : -1;
+    }
+
+    /**
+     * Returns the recipes whose name, category or any ingredient contains the
+     * given lowercased, trimmed, non-empty search text.
+     */
+    List<Recipe> search(String searchText) {
+        return search(searchText, null);
+    }
+
+    /**
+     * Returns the recipes in the accepted slots, or all when that is null,
+     * whose name, category or any ingredient contains the lowercased, trimmed
+     * search text. An empty search text matches every accepted recipe.
+     */
+    List<Recipe> search(String searchText, BitSet accepted) {
+        if (searchText.isEmpty() && accepted == null) {
+            List<Recipe> result = new ArrayList<>(entries.size());
+            int scanned = 0;
+            for (Entry entry : entries.values()) {
+                checkCancelled(++scanned);
+                result.add(entry.recipe);
+            }
+            return result;
+        }
+        return recipesIn(matchingSlots(searchText, accepted));
+    }
+
+    /** Like {@link #search}, but returns the slots of the matches. */
+    BitSet matchingSlots(String searchText, BitSet accepted) {
+        if (searchText.isEmpty()) {
+            if (accepted != null) return (BitSet) accepted.clone();
+            BitSet all = new BitSet(slots.size());
+            for (Entry entry : entries.values()) {
+                all.set(entry.slot);
+            }
+            return all;
+        }
+
+        // Any match of the whole query contains its longest whitespace-free piece
+        // inside a single token, so that piece selects the candidate terms.
+        String probe = longestPiece(searchText);
+
+        // Candidate slots; walking the set bits keeps insertion order
+        BitSet candidates = new BitSet(slots.size());
+        if (probe.isEmpty()) {
+            for (Entry entry : entries.values()) {
+                candidates.set(entry.slot);
+            }
+        } else {
+            IntList termMatches = termsContaining(probe);
+            for (int i = 0; i < termMatches.size; i++) {
+                checkCancelled(i);
+                IntList posting = postings.get(termMatches.values[i]);
+                for (int j = 0; j < posting.size; j++) {
+                    candidates.set(posting.values[j]);
+                }
+            }
+        }
+
+        if (accepted != null) candidates.and(accepted);
+
+        int scanned = 0;
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            checkCancelled(++scanned);
+            if (!matchesFields(slots.get(slot), searchText)) candidates.clear(slot);
+        }
+        return candidates;
+    }
+
+    /**
+     * Like {@link #search}, but a recipe also matches when its steps match the
+     * text as a {@link StepIndex} phrase; returns at most {@code limit}. Call
+     * {@link #indexSteps} first.
+     */
+    List<Recipe> searchWithSteps(String searchText, BitSet accepted, int limit) {
+        BitSet matches = matchingSlots(searchText, accepted);
+        BitSet inSteps = steps.search(searchText);
+        if (accepted != null) inSteps.and(accepted);
+        matches.or(inSteps);
+        List<Recipe> result = new ArrayList<>(Math.min(limit, matches.cardinality()));
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            if (result.size() == limit) break;
+            checkCancelled(result.size() + 1);
+            result.add(slots.get(slot).recipe);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the recipes in the accepted slots, or all when that is null,
+     * that use every one of the canonical ingredients, given by
+     * {@link IngredientDictionary} id, in insertion order. No ids matches every
+     * recipe.
+     */
+    List<Recipe> withIngredients(int[] ingredientIds, BitSet accepted) {
+        if (ingredientIds.length == 0) return search("", accepted);
+
+        BitSet matches = null;
+        for (int id : ingredientIds) {
+            BitSet used = id >= 0 && id < ingredientSlots.size() ? ingredientSlots.get(id) : null;
+            if (used == null) return new ArrayList<>();
+            if (matches == null) {
+                matches = (BitSet) used.clone();
+            } else {
+                matches.and(used);
+            }
+        }
+        if (accepted != null) matches.and(accepted);
+        return recipesIn(matches);
+    }
+
+    /**
+     * Ranks the recipes in the accepted slots, or all when that is null, that
+     * use at least one pantry ingredient by
+     * {@link PantryMatch#compareCoverage coverage}, ties in insertion order, and
+     * returns the best {@code limit}.
+     *
+     * Have-counts are summed over the pantry ingredients' slot bitsets, so the
+     * work is proportional to how many recipes use them, and only the returned
+     * matches look up their missing ingredients.
+     */
+    List<PantryMatch> matchPantry(int[] pantryIds, int limit, BitSet accepted) {
+        int[] pantry = distinctSorted(pantryIds.clone());
+        int[] have = new int[slots.size()];
+        BitSet touched = new BitSet(slots.size());
+        for (int id : pantry) {
+            BitSet used = id >= 0 && id < ingredientSlots.size() ? ingredientSlots.get(id) : null;
+            if (used == null) continue;
+            touched.or(used);
+            for (int slot = used.nextSetBit(0); slot >= 0; slot = used.nextSetBit(slot + 1)) {
+                have[slot]++;
+            }
+        }
+        if (accepted != null) touched.and(accepted);
+
+        // Min-heap of the best slots so far, worst on top
+        Comparator<Integer> best = (a, b) -> {
+            int byCoverage = PantryMatch.compareCoverage(have[a], slots.get(a).ingredientIds.length,
+                have[b], slots.get(b).ingredientIds.length);
+            return byCoverage != 0 ? byCoverage : Integer.compare(a, b);
+        };
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, 64) + 1, best.reversed());
+        int scanned = 0;
+        for (int slot = touched.nextSetBit(0); slot >= 0 && limit > 0; slot = touched.nextSetBit(slot + 1)) {
+            checkCancelled(++scanned);
+            if (top.size() < limit) {
+                top.add(slot);
+            } else if (best.compare(slot, top.peek()) < 0) {
+                top.poll();
+                top.add(slot);
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(top);
+        ranked.sort(best);
+        List<PantryMatch> result = new ArrayList<>(ranked.size());
+        for (int slot : ranked) {
+            Entry entry = slots.get(slot);
+            List<String> missing = new ArrayList<>();
+            for (int id : entry.ingredientIds) {
+                if (Arrays.binarySearch(pantry, id) < 0) missing.add(IngredientDictionary.name(id));
+            }
+            result.add(new PantryMatch(entry.recipe, have[slot], entry.ingredientIds.length, missing));
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to {@code limit} recipes in the accepted slots, or all when
+     * that is null, that match
+     * every whitespace-separated piece of the lowercased, trimmed search text,
+     * best first.
+     *
+     * A piece matches a term exactly, as a prefix or substring, or, for pieces
+     * of four or more characters, within one edit (two from eight characters)
+     * of the term's letters. A recipe scores, for every piece, its best match
+     * weighted by the field the term is in, name highest; ties are in insertion
+     * order. An empty search text returns the first recipes.
+     *
+     * Once {@code System.nanoTime()} passes the deadline, no more terms are
+     * looked up, typo lookups are skipped and scoring stops, returning the best
+     * of the matches scored so far.
+     */
+    List<Recipe> rank(String searchText, BitSet accepted, int limit, long deadline) {
+        return ranking(searchText, accepted, limit, deadline).recipes;
+    }
+
+    /**
+     * Like {@link #rank}, also counting every recipe that matched, not only the
+     * {@code limit} returned. Terms left unlooked-up at the deadline add none.
+     */
+    Ranking ranking(String searchText, BitSet accepted, int limit, long deadline) {
+        Set<String> pieces = new LinkedHashSet<>();
+        tokenize(searchText, pieces);
+        if (pieces.isEmpty()) {
+            List<Recipe> result = new ArrayList<>();
+            if (accepted == null) {
+                for (Entry entry : entries.values()) {
+                    if (result.size() == limit) break;
+                    result.add(entry.recipe);
+                }
+            } else {
+                for (int slot = accepted.nextSetBit(0); slot >= 0 && result.size() < limit;
+                     slot = accepted.nextSetBit(slot + 1)) {
+                    result.add(slots.get(slot).recipe);
+                }
+            }
+            return new Ranking(result, accepted == null ? entries.size() : accepted.cardinality());
+        }
+
+        // Per piece, the match quality of every term; candidates match all pieces
+        float[][] quality = new float[pieces.size()][];
+        BitSet candidates = null;
+        int p = 0;
+        for (String piece : pieces) {
+            float[] matches = new float[terms.size()];
+            BitSet matching = new BitSet(slots.size());
+            IntConsumer consider = id -> {
+                if (matches[id] > 0 || postings.get(id).size == 0) return;
+                matches[id] = termMatch(piece, terms.get(id));
+                if (matches[id] > 0) {
+                    IntList posting = postings.get(id);
+                    for (int j = 0; j < posting.size; j++) {
+                        matching.set(posting.values[j]);
+                    }
+                }
+            };
+            IntList containing = termsContaining(piece);
+            for (int i = 0; i < containing.size; i++) {
+                checkCancelled(i);
+                if (i % CANCEL_CHECK_INTERVAL == 0 && i > 0 && System.nanoTime() - deadline > 0) break;
+                consider.accept(containing.values[i]);
+            }
+            int edits = maxEdits(piece);
+            if (edits > 0 && System.nanoTime() - deadline < 0) {
+                words.search(piece, edits, consider);
+            }
+            quality[p++] = matches;
+            if (candidates == null) {
+                candidates = matching;
+            } else {
+                candidates.and(matching);
+            }
+        }
+        if (accepted != null) candidates.and(accepted);
+
+        // Min-heap of the best matches so far, worst on top
+        Comparator<Scored> best = (a, b) -> a.score != b.score ? Float.compare(b.score, a.score)
+            : Integer.compare(a.slot, b.slot);
+        PriorityQueue<Scored> top = new PriorityQueue<>(Math.min(limit, 64) + 1, best.reversed());
+        int scanned = 0;
+        for (int slot = candidates.nextSetBit(0); slot >= 0 && limit > 0; slot = candidates.nextSetBit(slot + 1)) {
+            checkCancelled(++scanned);
+            if (scanned % CANCEL_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) break;
+            Entry entry = slots.get(slot);
+
+            float score = 0;
+            for (float[] matches : quality) {
+                float bestMatch = 0;
+                for (int i = 0; i < entry.termRefs.length; i++) {
+                    float match = matches[entry.termRefs[i]];
+                    if (match > 0) bestMatch = Math.max(bestMatch, match * weight(entry.termFields[i]));
+                }
+                score += bestMatch;
+            }
+            if (top.size() < limit) {
+                top.add(new Scored(score, slot));
+            } else if (score > top.peek().score) {
+                top.poll();
+                top.add(new Scored(score, slot));
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(best);
+        List<Recipe> result = new ArrayList<>(ranked.size());
+        for (Scored scored : ranked) {
+            result.add(slots.get(scored.slot).recipe);
+        }
+        return new Ranking(result, candidates.cardinality());
+    }
+
+    /** The recipes a {@link #ranking} returns, best first, and how many matched in all. */
+    static final class Ranking {
+        final List<Recipe> recipes;
+        final int matches;
+
+        Ranking(List<Recipe> recipes, int matches) {
+            this.recipes = recipes;
+            this.matches = matches;
+        }
+    }
+
+    private static final class Scored {
+        final float score;
+        final int slot;
+
+        Scored(float score, int slot) {
+            this.score = score;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * How well a term matches a lowercased query piece, 0 for not at all. The
+     * term's letters alone count for exact, prefix and typo matches, so
+     * "garlic," matches "garlic" exactly.
+     */
+    static float termMatch(String piece, String term) {
+        String word = word(term);
+        String core = word != null ? word : term;
+        if (core.equals(piece)) return EXACT;
+        if (core.startsWith(piece)) return PREFIX;
+
+        float match = term.contains(piece) ? SUBSTRING : 0;
+        int edits = maxEdits(piece);
+        if (edits > 0 && word != null && Math.abs(word.length() - piece.length()) <= edits) {
+            int distance = BkTree.distance(piece, word);
+            if (distance == 1) {
+                match = Math.max(match, ONE_EDIT);
+            } else if (distance == 2 && edits >= 2) {
+                match = Math.max(match, TWO_EDITS);
+            }
+        }
+        return match;
+    }
+
+    /** Typos tolerated in a query piece: none below four characters, two from eight. */
+    static int maxEdits(String piece) {
+        return piece.length() < 4 ? 0 : piece.length() < 8 ? 1 : 2;
+    }
+
+    /**
+     * The term without leading and trailing non-letters, or null if what is
+     * left is empty or has anything but letters, hyphens and apostrophes.
+     */
+    static String word(String term) {
+        int start = 0;
+        int end = term.length();
+        while (start < end && !Character.isLetter(term.charAt(start))) start++;
+        while (end > start && !Character.isLetter(term.charAt(end - 1))) end--;
+        if (start == end) return null;
+        for (int i = start; i < end; i++) {
+            char c = term.charAt(i);
+            if (!Character.isLetter(c) && c != '-' && c != '\'') return null;
+        }
+        return term.substring(start, end);
+    }
+
+    private static float weight(int fields) {
+        if ((fields & NAME) != 0) return NAME_WEIGHT;
+        if ((fields & CATEGORY) != 0) return CATEGORY_WEIGHT;
+        return INGREDIENT_WEIGHT;
+    }
+
+    /** Ids of the live terms that contain the non-empty, whitespace-free piece. */
+    private IntList termsContaining(String piece) {
+        IntList result;
+        if (piece.length() <= MAX_GRAM) {
+            IntList listed = gramTerms.get(piece);
+            result = listed == null ? new IntList() : listed.copy();
+        } else {
+            // Intersect the trigram lists, smallest first
+            List<IntList> lists = new ArrayList<>();
+            for (int i = 0; i + MAX_GRAM <= piece.length(); i++) {
+                IntList listed = gramTerms.get(piece.substring(i, i + MAX_GRAM));
+                if (listed == null) return new IntList();
+                lists.add(listed);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            result = lists.get(0).copy();
+            for (int i = 1; i < lists.size() && result.size > 0; i++) {
+                result.retainAll(lists.get(i));
+            }
+            // Trigrams can all occur without the piece itself occurring
+            result.removeIf(id -> !terms.get(id).contains(piece));
+        }
+        result.removeIf(id -> postings.get(id).size == 0);
+        return result;
+    }
+
+    /** A recipe's lowercased name, category and ingredient lines, and their distinct tokens. */
+    private static class Analysis {
+        final String category;
+        final String[] fields;
+        final String[] lines;
+        // Distinct tokens and the fields they occur in
+        final Map<String, Integer> tokens;
+
+        Analysis(String category, String[] fields, String[] lines, Map<String, Integer> tokens) {
+            this.category = category;
+            this.fields = fields;
+            this.lines = lines;
+            this.tokens = tokens;
+        }
+    }
+
+    /** Touches nothing but the recipe, so it may run on any thread. */
+    private static Analysis analyze(Recipe recipe) {
+        List<String> ingredients = recipe.readIngredients();
+        String[] lines = new String[ingredients.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = ingredients.get(i).toLowerCase();
+        }
+        return analyze(recipe.category,
+            new String[] {recipe.name.toLowerCase(), recipe.category.toLowerCase()}, lines);
+    }
+
+    private static Analysis analyze(String category, String[] fields, String[] lines) {
+        Map<String, Integer> tokens = new HashMap<>();
+        List<String> pieces = new ArrayList<>();
+        tokenize(fields[0], pieces);
+        addTokens(pieces, NAME, tokens);
+        tokenize(fields[1], pieces);
+        addTokens(pieces, CATEGORY, tokens);
+        for (String line : lines) {
+            tokenize(line, pieces);
+        }
+        addTokens(pieces, INGREDIENT, tokens);
+        return new Analysis(category, fields, lines, tokens);
+    }
+
+    private static void addTokens(List<String> pieces, int field, Map<String, Integer> tokens) {
+        for (String piece : pieces) {
+            tokens.merge(piece, field, (a, b) -> a | b);
+        }
+        pieces.clear();
+    }
+
+    private void indexFields(Entry entry, Analysis analysis) {
+        Map<String, Integer> tokens = analysis.tokens;
+        int[] ids = new int[tokens.size()];
+        byte[] fields = new byte[tokens.size()];
+        int n = 0;
+        for (Map.Entry<String, Integer> token : tokens.entrySet()) {
+            int id = termId(token.getKey());
+            IntList posting = postings.get(id);
+            if (posting.size == 0) liveTerms++;
+            posting.insert(entry.slot);
+            fields[n] = token.getValue().byteValue();
+            ids[n++] = id;
+        }
+
+        int[] lineRefs = new int[analysis.lines.length];
+        int[] ingredientIds = new int[lineRefs.length];
+        for (int i = 0; i < lineRefs.length; i++) {
+            lineRefs[i] = lineId(analysis.lines[i]);
+            ingredientIds[i] = lineIngredients[lineRefs[i]];
+        }
+        ingredientIds = distinctSorted(ingredientIds);
+        for (int ingredient : ingredientIds) {
+            while (ingredientSlots.size() <= ingredient) ingredientSlots.add(null);
+            BitSet used = ingredientSlots.get(ingredient);
+            if (used == null) {
+                used = new BitSet();
+                ingredientSlots.set(ingredient, used);
+            }
+            used.set(entry.slot);
+        }
+
+        categorySlots.computeIfAbsent(analysis.category, c -> new BitSet()).set(entry.slot);
+
+        entry.category = analysis.category;
+        entry.fields = analysis.fields;
+        entry.lineRefs = lineRefs;
+        entry.ingredientIds = ingredientIds;
+        entry.termRefs = ids;
+        entry.termFields = fields;
+    }
+
+    private void unindexFields(Entry entry) {
+        for (int id : entry.termRefs) {
+            IntList posting = postings.get(id);
+            posting.remove(entry.slot);
+            if (posting.size == 0) liveTerms--;
+        }
+        for (int ingredient : entry.ingredientIds) {
+            ingredientSlots.get(ingredient).clear(entry.slot);
+        }
+        BitSet inCategory = categorySlots.get(entry.category);
+        inCategory.clear(entry.slot);
+        if (inCategory.isEmpty()) categorySlots.remove(entry.category);
+        entry.fields = null;
+        entry.lineRefs = null;
+        entry.ingredientIds = null;
+        entry.termRefs = null;
+        entry.termFields = null;
+    }
+
+    /** Interns a lowercased ingredient line, parsing it the first time it is seen. */
+    private int lineId(String line) {
+        Integer id = lineIds.get(line);
+        if (id != null) return id;
+
+        int newId = lines.size();
+        lineIds.put(line, newId);
+        lines.add(line);
+        if (newId == lineIngredients.length) {
+            lineIngredients = Arrays.copyOf(lineIngredients, newId * 2);
+        }
+        lineIngredients[newId] = Ingredient.parse(line).id;
+        return newId;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) return id;
+
+        int newId = terms.size();
+        termIds.put(term, newId);
+        terms.add(term);
+        postings.add(new IntList());
+
+        Set<String> grams = new HashSet<>();
+        for (int len = 1; len <= MAX_GRAM; len++) {
+            for (int i = 0; i + len <= term.length(); i++) {
+                grams.add(term.substring(i, i + len));
+            }
+        }
+        for (String gram : grams) {
+            gramTerms.computeIfAbsent(gram, g -> new IntList()).add(newId);
+        }
+        String word = word(term);
+        if (word != null) words.add(word, newId);
+        return newId;
+    }
+
+    /**
+     * Dead terms linger in the gram lists, and dead lines in the line
+     * dictionary; rebuild both once dead terms dominate.
+     */
+    private void compactIfSparse() {
+        if (terms.size() <= 1024 || liveTerms >= terms.size() / 2) return;
+
+        List<Entry> live = new ArrayList<>(entries.values());
+        List<Analysis> analyses = new ArrayList<>(live.size());
+        for (Entry entry : live) {
+            String[] entryLines = new String[entry.lineRefs.length];
+            for (int i = 0; i < entryLines.length; i++) {
+                entryLines[i] = lines.get(entry.lineRefs[i]);
+            }
+            analyses.add(analyze(entry.category, entry.fields, entryLines));
+            unindexFields(entry);
+        }
+        termIds.clear();
+        terms.clear();
+        postings.clear();
+        gramTerms.clear();
+        words.clear();
+        liveTerms = 0;
+        lineIds.clear();
+        lines.clear();
+        for (int i = 0; i < live.size(); i++) {
+            indexFields(live.get(i), analyses.get(i));
+        }
+    }
+
+    private List<Recipe> recipesIn(BitSet matches) {
+        List<Recipe> result = new ArrayList<>(matches.cardinality());
+        int scanned = 0;
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            checkCancelled(++scanned);
+            result.add(slots.get(slot).recipe);
+        }
+        return result;
+    }
+
+    private static void checkCancelled(int iteration) {
+        if (iteration % CANCEL_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search superseded");
+        }
+    }
+
+    private boolean matchesFields(Entry entry, String searchText) {
+        for (String field : entry.fields) {
+            if (field.contains(searchText)) return true;
+        }
+        for (int line : entry.lineRefs) {
+            if (lines.get(line).contains(searchText)) return true;
+        }
+        return false;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (n == 0 || values[n - 1] != values[i]) values[n++] = values[i];
+        }
+        return n == values.length ? values : Arrays.copyOf(values, n);
+    }
+
+    /** Splits on whitespace, the only separator a query piece can never contain. */
+    static void tokenize(String text, Collection<String> out) {
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                if (start >= 0) {
+                    out.add(text.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) out.add(text.substring(start));
+    }
+
+    private static String longestPiece(String searchText) {
+        List<String> pieces = new ArrayList<>();
+        tokenize(searchText, pieces);
+        String longest = "";
+        for (String piece : pieces) {
+            if (piece.length() > longest.length()) longest = piece;
+        }
+        return longest;
+    }
+
+    /** Growable, ascending list of term ids or entry slots. */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        /** Appends a value larger than any in the list. */
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        /** Adds a value that is not in the list yet, keeping it sorted. */
+        void insert(int value) {
+            if (size == 0 || values[size - 1] < value) {
+                add(value);
+                return;
+            }
+            int at = -Arrays.binarySearch(values, 0, size, value) - 1;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at < 0) return;
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+        }
+
+        IntList copy() {
+            IntList copy = new IntList();
+            copy.values = Arrays.copyOf(values, Math.max(size, 1));
+            copy.size = size;
+            return copy;
+        }
+
+        /** Keeps only the values also present in the other sorted list. */
+        void retainAll(IntList other) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                int value = values[i];
+                while (j < other.size && other.values[j] < value) j++;
+                if (j < other.size && other.values[j] == value) values[kept++] = value;
+            }
+            size = kept;
+        }
+
+        void removeIf(java.util.function.IntPredicate predicate) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!predicate.test(values[i])) values[kept++] = values[i];
+            }
+            size = kept;
+        }
+    }
+}
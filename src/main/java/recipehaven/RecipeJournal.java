@@ -0,0 +1,158 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Durable recipe book made of a {@link RecipeStore} snapshot plus a
+ * {@link RecipeLog} of the changes made since. A mutation appends one small
+ * record instead of rewriting the book.
+ *
+ * Once the log outgrows a fraction of the snapshot it is compacted: the
+ * current log is set aside as the archived log and a fresh one takes new
+ * records, then a background thread writes a new snapshot and deletes the
+ * archived log. Loading replays the archived log and then the current one, so
+ * a crash at any point of a compaction loses nothing.
+ *
+ * Appends are buffered until {@link #sync}. Appends, syncs and compaction
+ * requests must all come from one thread, the {@link RecipePersistence} writer.
+ */
+class RecipeJournal implements Closeable {
+    private static final long MIN_COMPACT_BYTES = 256 * 1024;
+    private static final String ARCHIVED_SUFFIX = ".1";
+
+    private final RecipeStore store;
+    private final Path archivedLogFile;
+    private final RecipeLog log;
+    private final ExecutorService compactor;
+    private volatile Future<?> compaction;
+    private volatile long snapshotSize;
+
+    RecipeJournal(Path snapshotFile, Path logFile) {
+        this.store = new RecipeStore(snapshotFile);
+        this.log = new RecipeLog(logFile);
+        this.archivedLogFile = logFile.resolveSibling(logFile.getFileName() + ARCHIVED_SUFFIX);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "recipe-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** True when there is neither a snapshot nor a log on disk yet. */
+    boolean isEmpty() throws IOException {
+        return !store.exists() && !Files.exists(archivedLogFile) && !Files.exists(log.getFile());
+    }
+
+    /** Loads the snapshot and replays the logs written after it. */
+    RecipeStore.Contents load() throws IOException {
+        RecipeStore.Contents snapshot = store.exists()
+            ? store.load() : new RecipeStore.Contents(new ArrayList<>(), new HashSet<>());
+        snapshotSize = store.size();
+
+        Map<String, Recipe> byId = new LinkedHashMap<>();
+        for (Recipe recipe : snapshot.recipes) {
+            byId.put(recipe.id, recipe);
+        }
+        Set<String> favoriteIds = snapshot.favoriteIds;
+        new RecipeLog(archivedLogFile).replay(byId, favoriteIds);
+        log.replay(byId, favoriteIds);
+
+        return new RecipeStore.Contents(new ArrayList<>(byId.values()), favoriteIds);
+    }
+
+    /** Replaces everything on disk with the given book, e.g. after a migration or an import. */
+    void saveSnapshot(List<Recipe> recipes, Set<String> favoriteIds) throws IOException {
+        awaitCompaction();
+        store.save(recipes, favoriteIds);
+        snapshotSize = store.size();
+        log.close();
+        Files.deleteIfExists(archivedLogFile);
+        Files.deleteIfExists(log.getFile());
+    }
+
+    void recordPut(Recipe recipe) throws IOException {
+        log.appendPut(recipe);
+    }
+
+    void recordDelete(String id) throws IOException {
+        log.appendDelete(id);
+    }
+
+    void recordFavorite(String id, boolean favorite) throws IOException {
+        log.appendFavorite(id, favorite);
+    }
+
+    /** Writes the records appended since the last sync to disk. */
+    void sync() throws IOException {
+        log.sync();
+    }
+
+    /** True when the log has grown past its budget and no compaction is running. */
+    boolean needsCompaction() throws IOException {
+        Future<?> running = compaction;
+        if (running != null && !running.isDone()) return false;
+        return log.size() >= Math.max(MIN_COMPACT_BYTES, snapshotSize / 4);
+    }
+
+    /**
+     * Starts a background compaction into the given copy of the book, which must
+     * include every record appended so far and must not be touched by later
+     * edits. A failure to write the snapshot goes to {@code errorHandler} on
+     * the compaction thread.
+     */
+    void compact(RecipeStore.Contents contents, Consumer<IOException> errorHandler) throws IOException {
+        awaitCompaction();
+        archiveLog();
+        compaction = compactor.submit(() -> {
+            try {
+                store.save(contents.recipes, contents.favoriteIds);
+                snapshotSize = store.size();
+                Files.deleteIfExists(archivedLogFile);
+            } catch (IOException e) {
+                // The archived log still holds every logged change; the next compaction retries
+                errorHandler.accept(e);
+            }
+        });
+    }
+
+    /** Waits for a running compaction and closes the log. */
+    @Override
+    public void close() throws IOException {
+        awaitCompaction();
+        compactor.shutdown();
+        log.close();
+    }
+
+    /** Moves the current log aside, appending to an archived log left by a failed compaction. */
+    private void archiveLog() throws IOException {
+        log.close();
+        Path current = log.getFile();
+        if (!Files.exists(current)) return;
+
+        if (Files.exists(archivedLogFile)) {
+            try (OutputStream out = Files.newOutputStream(archivedLogFile, StandardOpenOption.APPEND)) {
+                Files.copy(current, out);
+            }
+            Files.delete(current);
+        } else {
+            Files.move(current, archivedLogFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void awaitCompaction() throws IOException {
+        Future<?> running = compaction;
+        if (running == null) return;
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compacting recipes");
+        } catch (ExecutionException e) {
+            throw new IOException("Compaction failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package recipehaven;
+
+import java.util.*;
+
+/**
+ * The recipes of one {@link RecipeRepository.Snapshot}, in book order.
+ *
+ * The list is immutable; a change derives a new list that shares every chunk
+ * but the one it touches, so replacing, adding or removing a recipe copies a
+ * chunk of {@value #CHUNK_SIZE} references and the chunk table instead of the
+ * whole book.
+ *
+ * Recipes sit in slots that keep their number across changes, which lets the
+ * repository find a recipe's slot by id. A removed recipe leaves an empty slot
+ * that list positions skip; once empty slots outnumber recipes the repository
+ * {@linkplain #compact compacts} the list, renumbering the slots.
+ */
+final class RecipeList extends AbstractList<Recipe> implements RandomAccess {
+    static final int CHUNK_SIZE = 256;
+    static final RecipeList EMPTY = new RecipeList(new Recipe[0][], new int[1], 0);
+
+    // Full chunks but the last; null where a recipe was removed
+    private final Recipe[][] chunks;
+    // Recipes in the chunks before each chunk; the last value is the size
+    private final int[] before;
+    private final int slots;
+
+    private RecipeList(Recipe[][] chunks, int[] before, int slots) {
+        this.chunks = chunks;
+        this.before = before;
+        this.slots = slots;
+    }
+
+    /** A list of the recipes in the order given, the first in slot 0. */
+    static RecipeList of(Collection<Recipe> recipes) {
+        Recipe[] all = recipes.toArray(new Recipe[0]);
+        int chunkCount = (all.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Recipe[][] chunks = new Recipe[chunkCount][];
+        int[] before = new int[chunkCount + 1];
+        for (int c = 0; c < chunkCount; c++) {
+            int from = c * CHUNK_SIZE;
+            chunks[c] = Arrays.copyOfRange(all, from, Math.min(from + CHUNK_SIZE, all.length));
+            before[c + 1] = before[c] + chunks[c].length;
+        }
+        return new RecipeList(chunks, before, all.length);
+    }
+
+    @Override
+    public int size() {
+        return before[chunks.length];
+    }
+
+    @Override
+    public Recipe get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index);
+        // The last chunk with fewer recipes before it than the index holds it
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (before[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Recipe[] chunk = chunks[low];
+        int skip = index - before[low];
+        if (before[low + 1] - before[low] == chunk.length) return chunk[skip];
+        for (Recipe recipe : chunk) {
+            if (recipe != null && skip-- == 0) return recipe;
+        }
+        throw new IllegalStateException("Chunk counts out of step");
+    }
+
+    @Override
+    public Iterator<Recipe> iterator() {
+        return new Iterator<Recipe>() {
+            private int chunk;
+            private int slot;
+            private int left = size();
+
+            public boolean hasNext() {
+                return left > 0;
+            }
+
+            public Recipe next() {
+                if (left == 0) throw new NoSuchElementException();
+                while (true) {
+                    if (slot == chunks[chunk].length) {
+                        chunk++;
+                        slot = 0;
+                        continue;
+                    }
+                    Recipe recipe = chunks[chunk][slot++];
+                    if (recipe != null) {
+                        left--;
+                        return recipe;
+                    }
+                }
+            }
+        };
+    }
+
+    /** Slots in use, counting the empty ones; the next recipe added gets this slot. */
+    int slots() {
+        return slots;
+    }
+
+    /** The recipe in the slot, or null if it was removed. */
+    Recipe atSlot(int slot) {
+        return chunks[slot / CHUNK_SIZE][slot % CHUNK_SIZE];
+    }
+
+    /** This list with the recipe in the slot replaced. */
+    RecipeList with(int slot, Recipe recipe) {
+        Recipe[][] nextChunks = chunks.clone();
+        Recipe[] chunk = nextChunks[slot / CHUNK_SIZE].clone();
+        chunk[slot % CHUNK_SIZE] = recipe;
+        nextChunks[slot / CHUNK_SIZE] = chunk;
+        return new RecipeList(nextChunks, before, slots);
+    }
+
+    /** This list with the recipe appended in slot {@link #slots()}. */
+    RecipeList withAdded(Recipe recipe) {
+        int last = slots / CHUNK_SIZE;
+        Recipe[][] nextChunks = Arrays.copyOf(chunks, Math.max(chunks.length, last + 1));
+        Recipe[] chunk = last < chunks.length ? chunks[last] : new Recipe[0];
+        chunk = Arrays.copyOf(chunk, chunk.length + 1);
+        chunk[chunk.length - 1] = recipe;
+        nextChunks[last] = chunk;
+
+        int[] nextBefore = Arrays.copyOf(before, nextChunks.length + 1);
+        nextBefore[nextChunks.length] = size() + 1;
+        return new RecipeList(nextChunks, nextBefore, slots + 1);
+    }
+
+    /** This list with the slot emptied; the slot must hold a recipe. */
+    RecipeList without(int slot) {
+        int c = slot / CHUNK_SIZE;
+        Recipe[][] nextChunks = chunks.clone();
+        nextChunks[c] = chunks[c].clone();
+        nextChunks[c][slot % CHUNK_SIZE] = null;
+        int[] nextBefore = before.clone();
+        for (int i = c + 1; i < nextBefore.length; i++) {
+            nextBefore[i]--;
+        }
+        return new RecipeList(nextChunks, nextBefore, slots);
+    }
+
+    /** Whether empty slots outnumber the recipes, so {@link #compact} is worth its copy. */
+    boolean isSparse() {
+        return slots > CHUNK_SIZE && slots - size() > size();
+    }
+
+    /** The same recipes with no empty slots, renumbered from 0 in list order. */
+    RecipeList compact() {
+        return of(this);
+    }
+}
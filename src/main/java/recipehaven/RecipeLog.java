@@ -0,0 +1,223 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of recipe book mutations. Each record is framed as
+ * <pre>
+ *   int32 payload length, int32 CRC-32 of the payload, payload
+ * </pre>
+ * where the payload is a type byte followed by the record fields in the
+ * {@link RecipeStore} encodings. Every record is idempotent (put replaces by
+ * id, delete and favorite flags are absolute), so replaying a log over a
+ * snapshot that already contains some of its records gives the same book.
+ *
+ * A torn or corrupt record at the end of the file, left by a crash mid-append,
+ * ends the replay and is cut off.
+ *
+ * Appended records are buffered until {@link #sync}, which writes them with
+ * one system call and forces them to disk.
+ */
+class RecipeLog implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte FAVORITE = 3;
+    private static final byte UNFAVORITE = 4;
+
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    RecipeLog(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /** Bytes on disk plus bytes appended but not yet synced. */
+    long size() throws IOException {
+        long written = channel != null ? channel.size() : Files.exists(file) ? Files.size(file) : 0;
+        return written + pending.size();
+    }
+
+    /**
+     * Applies the records of the log file, if any, to the book keyed by recipe
+     * id, and truncates a torn tail.
+     */
+    void replay(Map<String, Recipe> recipes, Set<String> favoriteIds) throws IOException {
+        if (!Files.exists(file)) return;
+
+        ByteBuffer buf;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ByteBuffer.allocate((int) in.size());
+            while (buf.hasRemaining() && in.read(buf) >= 0) {
+                // keep reading
+            }
+            buf.flip();
+        }
+
+        CRC32 crc = new CRC32();
+        int validEnd = 0;
+        while (buf.remaining() >= HEADER_SIZE) {
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length < 1 || length > buf.remaining()) break;
+
+            crc.reset();
+            crc.update(buf.array(), buf.position(), length);
+            if ((int) crc.getValue() != checksum) break;
+
+            ByteBuffer payload = ByteBuffer.wrap(buf.array(), buf.position(), length).slice();
+            buf.position(buf.position() + length);
+            try {
+                apply(new RecipeStore.Input(payload), recipes, favoriteIds);
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+            validEnd = buf.position();
+        }
+
+        if (validEnd < buf.limit()) {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                out.truncate(validEnd);
+            }
+        }
+    }
+
+    void appendPut(Recipe recipe) throws IOException {
+        append(out -> {
+            out.writeByte(PUT);
+            out.writeId(recipe.id);
+            out.writeString(recipe.name);
+            out.writeString(recipe.category);
+            List<String> ingredients = recipe.readIngredients();
+            out.writeVarInt(ingredients.size());
+            for (String ing : ingredients) {
+                out.writeString(ing);
+            }
+            out.writeString(recipe.readSteps());
+        });
+    }
+
+    void appendDelete(String id) throws IOException {
+        append(out -> {
+            out.writeByte(DELETE);
+            out.writeId(id);
+        });
+    }
+
+    void appendFavorite(String id, boolean favorite) throws IOException {
+        append(out -> {
+            out.writeByte(favorite ? FAVORITE : UNFAVORITE);
+            out.writeId(id);
+        });
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk. On failure the
+     * buffered records are dropped and the file is cut back to its last synced
+     * size, so a retry never lands behind a torn record.
+     */
+    void sync() throws IOException {
+        if (pending.size() == 0) return;
+
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        }
+        long syncedSize = channel.size();
+        ByteBuffer records = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        try {
+            while (records.hasRemaining()) channel.write(records);
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(syncedSize);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /** Syncs buffered records and closes the file. */
+    @Override
+    public void close() throws IOException {
+        sync();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private interface RecordWriter {
+        void write(RecipeStore.Output out) throws IOException;
+    }
+
+    private void append(RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        RecipeStore.Output out = new RecipeStore.Output(Channels.newChannel(bytes));
+        writer.write(out);
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(payload.length);
+        header.putInt((int) crc.getValue());
+
+        pending.write(header.array(), 0, HEADER_SIZE);
+        pending.write(payload, 0, payload.length);
+    }
+
+    private static void apply(RecipeStore.Input in, Map<String, Recipe> recipes, Set<String> favoriteIds)
+            throws IOException {
+        byte type = in.readByte();
+        String id = in.readId();
+        switch (type) {
+            case PUT:
+                String name = in.readString();
+                String category = in.readString();
+                int count = in.readVarInt();
+                List<String> ingredients = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    ingredients.add(in.readString());
+                }
+                String steps = in.readString();
+                Recipe existing = recipes.get(id);
+                if (existing != null) {
+                    // Edits keep the recipe's place in the book
+                    existing.name = name;
+                    existing.category = category;
+                    existing.setDetails(ingredients, steps);
+                } else {
+                    recipes.put(id, new Recipe(id, name, category, ingredients, steps));
+                }
+                break;
+            case DELETE:
+                recipes.remove(id);
+                favoriteIds.remove(id);
+                break;
+            case FAVORITE:
+                favoriteIds.add(id);
+                break;
+            case UNFAVORITE:
+                favoriteIds.remove(id);
+                break;
+            default:
+                throw new IOException("Unknown log record type " + type);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package recipehaven;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Writes recipe book changes to a {@link RecipeJournal} on a dedicated thread,
+ * so the EDT never waits on disk I/O.
+ *
+ * Changes queue up in a bounded queue; a full queue blocks the submitter until
+ * the writer catches up. The writer drains whatever has queued up and
+ * coalesces it, keeping only the last change per recipe and per favorite flag,
+ * so a burst such as ten favorite toggles costs one small append and one
+ * fsync. When the journal wants compacting, the submitting thread is asked
+ * for a copy of the book through {@link #isSnapshotWanted} and
+ * {@link #submitSnapshot}.
+ *
+ * Batches are timed as the {@link Diagnostics#SAVE} stage, and the changes
+ * waiting, merged away and failed are counted in {@link Diagnostics}.
+ *
+ * Apart from the snapshot copy, the methods may be called from any thread;
+ * the EDT is the only caller in the application.
+ */
+class RecipePersistence implements Closeable {
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final int PUT = 1;
+    private static final int DELETE = 2;
+    private static final int FAVORITE = 3;
+    private static final int SNAPSHOT = 4;
+    private static final int IMPORT = 5;
+    private static final int FLUSH = 6;
+    private static final int STOP = 7;
+
+    private static class Change {
+        final int kind;
+        final String id;
+        final Recipe recipe;
+        final boolean favorite;
+        final RecipeStore.Contents snapshot;
+        final List<Recipe> imported;
+        final CountDownLatch done;
+
+        Change(int kind, String id, Recipe recipe, boolean favorite,
+               RecipeStore.Contents snapshot, CountDownLatch done) {
+            this(kind, id, recipe, favorite, snapshot, null, done);
+        }
+
+        Change(int kind, String id, Recipe recipe, boolean favorite,
+               RecipeStore.Contents snapshot, List<Recipe> imported, CountDownLatch done) {
+            this.kind = kind;
+            this.id = id;
+            this.recipe = recipe;
+            this.favorite = favorite;
+            this.snapshot = snapshot;
+            this.imported = imported;
+            this.done = done;
+        }
+
+        /** Changes with the same key overwrite each other; a delete overwrites a put. */
+        String key() {
+            return (kind == FAVORITE ? "f:" : "r:") + id;
+        }
+    }
+
+    private final RecipeJournal journal;
+    private final BlockingQueue<Change> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final Consumer<IOException> errorHandler;
+    private volatile boolean snapshotWanted;
+    private volatile boolean closed;
+
+    /**
+     * @param errorHandler called on the writer thread when a batch cannot be
+     *                     written; the batch is retried with the next one
+     */
+    RecipePersistence(RecipeJournal journal, Consumer<IOException> errorHandler) {
+        this.journal = journal;
+        this.errorHandler = errorHandler;
+        this.writer = new Thread(this::run, "recipe-persistence");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** Queues the recipe's current content; later edits to the object are not seen. */
+    void recipeSaved(Recipe recipe) {
+        enqueue(new Change(PUT, recipe.id, recipe.copy(), false, null, null));
+    }
+
+    void recipeDeleted(String id) {
+        enqueue(new Change(DELETE, id, null, false, null, null));
+    }
+
+    void favoriteChanged(String id, boolean favorite) {
+        enqueue(new Change(FAVORITE, id, null, favorite, null, null));
+    }
+
+    /** True once the journal has asked for a copy of the book to compact into. */
+    boolean isSnapshotWanted() {
+        return snapshotWanted;
+    }
+
+    /**
+     * Hands over a copy of the book reflecting every change submitted so far,
+     * which the writer compacts the journal into.
+     */
+    void submitSnapshot(RecipeStore.Contents snapshot) {
+        snapshotWanted = false;
+        enqueue(new Change(SNAPSHOT, null, null, false, snapshot, null));
+    }
+
+    /**
+     * Saves a batch of recipes, such as an import, by writing the given copy of
+     * the book as a new snapshot instead of logging every recipe. Until that
+     * snapshot is on disk the batch is only in memory, so if it cannot be
+     * written the recipes are logged one by one instead.
+     */
+    void recipesSaved(List<Recipe> recipes, RecipeStore.Contents snapshot) {
+        snapshotWanted = false;
+        enqueue(new Change(IMPORT, null, null, false, snapshot, recipes, null));
+    }
+
+    /** Blocks until every change submitted before the call is on disk. */
+    void flush() throws InterruptedIOException {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Change(FLUSH, null, null, false, null, done));
+        await(done);
+    }
+
+    /** Writes everything still queued, waits for compaction and closes the journal. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        CountDownLatch done = new CountDownLatch(1);
+        putUninterruptibly(new Change(STOP, null, null, false, null, done));
+        await(done);
+        journal.close();
+    }
+
+    private void enqueue(Change change) {
+        if (closed) throw new IllegalStateException("Persistence is closed");
+        if (change.kind <= FAVORITE) Diagnostics.PENDING_WRITES.increment();
+        putUninterruptibly(change);
+    }
+
+    /** Blocks while the queue is full; this is the backpressure on the EDT. */
+    private void putUninterruptibly(Change change) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(change);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void await(CountDownLatch done) throws InterruptedIOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving recipes");
+        }
+    }
+
+    private void run() {
+        List<Change> drained = new ArrayList<>();
+        // Coalesced changes not yet on disk, in the order of their last update
+        LinkedHashMap<String, Change> batch = new LinkedHashMap<>();
+        while (true) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(drained);
+
+            for (Change change : drained) {
+                switch (change.kind) {
+                    case PUT:
+                    case DELETE:
+                    case FAVORITE:
+                        addToBatch(batch, change);
+                        break;
+                    case SNAPSHOT:
+                        // The snapshot covers everything before it, so write that first
+                        if (writeBatch(batch)) compact(change.snapshot);
+                        break;
+                    case IMPORT:
+                        if (!writeBatch(batch) || !saveSnapshot(change.snapshot)) {
+                            // Not durable yet: log the batch like single saves, retrying until it is written
+                            Diagnostics.PENDING_WRITES.add(change.imported.size());
+                            for (Recipe recipe : change.imported) {
+                                addToBatch(batch, new Change(PUT, recipe.id, recipe.copy(), false, null, null));
+                            }
+                            writeBatch(batch);
+                        }
+                        break;
+                    case FLUSH:
+                        writeBatch(batch);
+                        change.done.countDown();
+                        break;
+                    case STOP:
+                        writeBatch(batch);
+                        change.done.countDown();
+                        return;
+                }
+            }
+            drained.clear();
+            writeBatch(batch);
+        }
+    }
+
+    /** Adds the change to the batch, replacing an unwritten change with the same key. */
+    private static void addToBatch(LinkedHashMap<String, Change> batch, Change change) {
+        // Re-insert so the batch keeps the order of the latest changes
+        if (batch.remove(change.key()) != null) {
+            Diagnostics.PENDING_WRITES.add(-1);
+            Diagnostics.CHANGES_COALESCED.increment();
+        }
+        batch.put(change.key(), change);
+    }
+
+    /** Appends and syncs the batch; on failure keeps it for the next attempt. */
+    private boolean writeBatch(LinkedHashMap<String, Change> batch) {
+        if (batch.isEmpty()) return true;
+
+        Diagnostics.Span span = Diagnostics.SAVE.start();
+        try {
+            for (Change change : batch.values()) {
+                if (change.kind == PUT) {
+                    journal.recordPut(change.recipe);
+                } else if (change.kind == DELETE) {
+                    journal.recordDelete(change.id);
+                } else {
+                    journal.recordFavorite(change.id, change.favorite);
+                }
+            }
+            journal.sync();
+        } catch (IOException | UncheckedIOException e) {
+            Diagnostics.WRITE_FAILURES.increment();
+            errorHandler.accept(e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause()
+                : (IOException) e);
+            return false;
+        }
+
+        span.end(batch.size());
+        Diagnostics.PENDING_WRITES.add(-batch.size());
+        batch.clear();
+
+        try {
+            if (journal.needsCompaction()) snapshotWanted = true;
+        } catch (IOException e) {
+            errorHandler.accept(e);
+        }
+        return true;
+    }
+
+    private void compact(RecipeStore.Contents snapshot) {
+        try {
+            Diagnostics.Span span = Diagnostics.COMPACT.start();
+            journal.compact(snapshot, errorHandler);
+            span.end(snapshot.recipes.size());
+        } catch (IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    /** Writes the snapshot on this thread, so later changes wait until it is durable. */
+    private boolean saveSnapshot(RecipeStore.Contents snapshot) {
+        try {
+            Diagnostics.Span span = Diagnostics.COMPACT.start();
+            journal.saveSnapshot(snapshot.recipes, snapshot.favoriteIds);
+            span.end(snapshot.recipes.size());
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            errorHandler.accept(e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause()
+                : (IOException) e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package recipehaven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+/**
+ * The recipe book and its search, independent of any UI.
+ *
+ * Readers work on immutable {@link Snapshot}s. Every change publishes a new
+ * snapshot, so a reader holding one never sees a half-applied edit. Recipes
+ * are treated as values: an edit saves a new {@link Recipe} under the same id
+ * instead of changing the stored object, and a saved recipe must not be
+ * modified afterwards.
+ *
+ * Recipes are kept in a {@link RecipeList} and found by id through a map of
+ * their slots, so saving or deleting one recipe costs the same in a book of
+ * any size. The index keeps the slots of each category and of the favorites,
+ * so a category or favorites view touches only the recipes it lists.
+ *
+ * Changes are applied one at a time and reported to the {@link RecipeStorage}
+ * in the same order. Searches hold a read lock on the index, so they run in
+ * parallel with each other and see either all or none of an edit. The index is
+ * built by the first search rather than on load, keeping startup fast, and
+ * the steps by the first search that includes them.
+ *
+ * All methods are thread-safe.
+ */
+class RecipeRepository implements Closeable {
+    static final String ALL = "All";
+    static final String FAVORITES = "Favorites";
+
+    // Batches larger than 1/REBUILD_FRACTION of the book rebuild the index instead of updating it
+    private static final int REBUILD_FRACTION = 8;
+
+    /** The book at one point in time. */
+    static final class Snapshot {
+        final long version;
+        final RecipeList recipes;
+        final Set<String> favoriteIds;
+
+        private Snapshot(long version, RecipeList recipes, Set<String> favoriteIds) {
+            this.version = version;
+            this.recipes = recipes;
+            this.favoriteIds = favoriteIds;
+        }
+
+        boolean isFavorite(String id) {
+            return favoriteIds.contains(id);
+        }
+    }
+
+    private final RecipeStorage storage;
+    private final RecipeIndex index = new RecipeIndex();
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private volatile boolean indexed;
+    private volatile boolean stepsIndexed;
+    private volatile Snapshot snapshot;
+    // Slot of every recipe in the snapshot's list, by id; used by changes only
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /** Opens the book kept by the storage. */
+    RecipeRepository(RecipeStorage storage) throws IOException {
+        this.storage = storage;
+        RecipeStore.Contents contents = storage.load();
+        this.snapshot = new Snapshot(0, numbered(RecipeList.of(contents.recipes)),
+            Collections.unmodifiableSet(new HashSet<>(contents.favoriteIds)));
+    }
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the recipes in the category filter ({@link #ALL}, {@link #FAVORITES}
+     * or a category) whose name, category or any ingredient contains the search
+     * text, ignoring case and surrounding whitespace. Results are in book order.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread
+     *         is interrupted while searching
+     */
+    List<Recipe> search(String searchText, String filter) {
+        return search(searchText, filter, null);
+    }
+
+    /**
+     * Like {@link #search}, but {@link #FAVORITES} selects the given ids, such
+     * as one user's favorites, instead of the book's favorites; null selects
+     * the book's.
+     */
+    List<Recipe> search(String searchText, String filter, Set<String> favoriteIds) {
+        ensureIndexed();
+        String text = searchText.toLowerCase().trim();
+        indexLock.readLock().lock();
+        try {
+            // The snapshot and the index only change together under the write lock
+            return index.search(text, accepted(filter, favoriteIds));
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /** The recipe with the id, or null if it is not in the book. */
+    Recipe get(String id) {
+        ensureIndexed();
+        indexLock.readLock().lock();
+        try {
+            return index.get(id);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether {@link #search}, or {@link #searchWithSteps} when steps are
+     * included, would return the recipe, judged from the recipe alone. Lets a
+     * view follow a change to one recipe without searching again.
+     */
+    boolean matches(Recipe recipe, String searchText, String filter, boolean includeSteps) {
+        if (!categoryFilter(filter, snapshot.favoriteIds).test(recipe.id, recipe.category)) return false;
+        String text = searchText.toLowerCase().trim();
+        if (text.isEmpty()
+                || recipe.name.toLowerCase().contains(text)
+                || recipe.category.toLowerCase().contains(text)) {
+            return true;
+        }
+        for (String ingredient : recipe.readIngredients()) {
+            if (ingredient.toLowerCase().contains(text)) return true;
+        }
+        return includeSteps && StepIndex.matches(recipe.readSteps(), text);
+    }
+
+    /**
+     * The recipe's place in book order as a number that compares with other
+     * recipes' places, or -1 if it is not in the book. Unlike a list index it
+     * does not change when other recipes are added or deleted.
+     */
+    int position(String id) {
+        ensureIndexed();
+        indexLock.readLock().lock();
+        try {
+            return index.position(id);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link #search}, but a recipe also matches when its steps contain the
+     * words of the search text as a phrase, the last word possibly unfinished
+     * (see {@link StepIndex}). Returns the first {@code limit} in book order.
+     * The first such search indexes the steps of the whole book.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread
+     *         is interrupted while searching
+     */
+    List<Recipe> searchWithSteps(String searchText, String filter, int limit) {
+        ensureStepsIndexed();
+        String text = searchText.toLowerCase().trim();
+        indexLock.readLock().lock();
+        try {
+            return index.searchWithSteps(text, index.slotsIn(filter), limit);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best {@code limit} recipes in the category filter for the
+     * search text, most relevant first: every word of the text must match,
+     * typos are tolerated and name matches count most (see
+     * {@link RecipeIndex#rank}). Once {@code budgetMillis} have passed, the best
+     * of the matches scored so far are returned.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread
+     *         is interrupted while searching
+     */
+    List<Recipe> rankedSearch(String searchText, String filter, int limit, long budgetMillis) {
+        return rankedSearch(searchText, filter, null, limit, budgetMillis).recipes;
+    }
+
+    /**
+     * Like {@link #rankedSearch}, with favorites as in
+     * {@link #search(String, String, Set)}, also counting every match (see
+     * {@link RecipeIndex#ranking}).
+     */
+    RecipeIndex.Ranking rankedSearch(String searchText, String filter, Set<String> favoriteIds, int limit,
+                                     long budgetMillis) {
+        ensureIndexed();
+        String text = searchText.toLowerCase().trim();
+        indexLock.readLock().lock();
+        try {
+            // The budget covers the search itself, not building the index or waiting for the lock
+            long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+            return index.ranking(text, accepted(filter, favoriteIds), limit, deadline);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the recipes in the category filter that use every one of the
+     * ingredients. Ingredients are compared by canonical name, so "Tomatoes"
+     * finds "2 tomatoes, diced" but not "1 cup cherry tomatoes". Results are in
+     * book order.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread
+     *         is interrupted while searching
+     */
+    List<Recipe> withIngredients(Collection<String> ingredients, String filter) {
+        int[] ids = new int[ingredients.size()];
+        int n = 0;
+        for (String ingredient : ingredients) {
+            ids[n] = IngredientDictionary.lookup(Ingredient.canonicalName(ingredient));
+            if (ids[n++] < 0) return new ArrayList<>();
+        }
+        ensureIndexed();
+        indexLock.readLock().lock();
+        try {
+            return index.withIngredients(ids, index.slotsIn(filter));
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Answers "what can I cook with what I have": ranks the recipes in the
+     * category filter that contain the search text and use at least one pantry
+     * ingredient, best covered first, and returns the top {@code limit} with
+     * the ingredients each is missing. Pantry items are compared by canonical
+     * name, like {@link #withIngredients}; an empty search text matches every
+     * recipe.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread
+     *         is interrupted while searching
+     */
+    List<PantryMatch> matchPantry(Collection<String> pantry, String searchText, String filter, int limit) {
+        int[] ids = new int[pantry.size()];
+        int n = 0;
+        for (String item : pantry) {
+            int id = IngredientDictionary.lookup(Ingredient.canonicalName(item));
+            // Nothing uses an unknown item, so it cannot raise any recipe's coverage
+            if (id >= 0) ids[n++] = id;
+        }
+        ids = Arrays.copyOf(ids, n);
+
+        ensureIndexed();
+        String text = searchText.toLowerCase().trim();
+        indexLock.readLock().lock();
+        try {
+            BitSet accepted = index.slotsIn(filter);
+            if (!text.isEmpty()) accepted = index.matchingSlots(text, accepted);
+            return index.matchPantry(ids, limit, accepted);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /** Adds the recipe, or replaces the recipe with the same id in place. */
+    synchronized void save(Recipe recipe) {
+        Snapshot current = snapshot;
+        Integer slot = slots.get(recipe.id);
+        RecipeList recipes;
+        if (slot != null) {
+            recipes = current.recipes.with(slot, recipe);
+        } else {
+            slots.put(recipe.id, current.recipes.slots());
+            recipes = current.recipes.withAdded(recipe);
+        }
+
+        Snapshot next = new Snapshot(current.version + 1, recipes, current.favoriteIds);
+        indexLock.writeLock().lock();
+        try {
+            if (indexed) {
+                if (slot != null) {
+                    index.update(recipe);
+                } else {
+                    index.add(recipe);
+                    // A favorite flag can outlive its recipe in an older book file
+                    if (current.isFavorite(recipe.id)) index.setFavorite(recipe.id, true);
+                }
+            }
+            snapshot = next;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        storage.recipeSaved(recipe, next);
+    }
+
+    /**
+     * Saves many recipes as one change: one new snapshot, one storage call and,
+     * for large batches, one index rebuild instead of per-recipe updates.
+     * Recipes whose id is already in the book replace it in place.
+     */
+    synchronized void saveAll(List<Recipe> saved) {
+        if (saved.isEmpty()) return;
+        Snapshot current = snapshot;
+        RecipeList recipes = current.recipes;
+        if (saved.size() > recipes.size() / REBUILD_FRACTION) {
+            // Cheaper to lay the book out again than to copy a chunk per recipe
+            Map<String, Recipe> byId = new LinkedHashMap<>();
+            for (Recipe recipe : recipes) {
+                byId.put(recipe.id, recipe);
+            }
+            for (Recipe recipe : saved) {
+                byId.put(recipe.id, recipe);
+            }
+            recipes = numbered(RecipeList.of(byId.values()));
+        } else {
+            for (Recipe recipe : saved) {
+                Integer slot = slots.get(recipe.id);
+                if (slot != null) {
+                    recipes = recipes.with(slot, recipe);
+                } else {
+                    slots.put(recipe.id, recipes.slots());
+                    recipes = recipes.withAdded(recipe);
+                }
+            }
+        }
+
+        Snapshot next = new Snapshot(current.version + 1, recipes, current.favoriteIds);
+        indexLock.writeLock().lock();
+        try {
+            if (indexed) {
+                if (saved.size() > current.recipes.size() / REBUILD_FRACTION) {
+                    index.rebuild(next.recipes, next.favoriteIds);
+                } else {
+                    for (Recipe recipe : saved) {
+                        boolean added = index.position(recipe.id) < 0;
+                        index.update(recipe);
+                        if (added && next.isFavorite(recipe.id)) index.setFavorite(recipe.id, true);
+                    }
+                }
+            }
+            snapshot = next;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        storage.recipesSaved(saved, next);
+    }
+
+    /**
+     * Replaces the recipe with the same id, if the book still has one.
+     *
+     * @return whether the recipe was saved
+     */
+    synchronized boolean replace(Recipe recipe) {
+        if (!slots.containsKey(recipe.id)) return false;
+        save(recipe);
+        return true;
+    }
+
+    /**
+     * Removes the recipe and its favorite flag; unknown ids are ignored.
+     *
+     * @return whether the recipe was in the book
+     */
+    synchronized boolean delete(String id) {
+        Snapshot current = snapshot;
+        Integer slot = slots.remove(id);
+        if (slot == null) return false;
+        Recipe removed = current.recipes.atSlot(slot);
+        RecipeList recipes = current.recipes.without(slot);
+        if (recipes.isSparse()) recipes = numbered(recipes.compact());
+        Set<String> favoriteIds = current.favoriteIds;
+        if (current.isFavorite(id)) {
+            Set<String> remaining = new HashSet<>(favoriteIds);
+            remaining.remove(id);
+            favoriteIds = Collections.unmodifiableSet(remaining);
+        }
+
+        Snapshot next = new Snapshot(current.version + 1, recipes, favoriteIds);
+        indexLock.writeLock().lock();
+        try {
+            if (indexed) index.remove(removed);
+            snapshot = next;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        storage.recipeDeleted(id, next);
+        return true;
+    }
+
+    synchronized void setFavorite(String id, boolean favorite) {
+        Snapshot current = snapshot;
+        if (current.isFavorite(id) == favorite) return;
+        Set<String> favoriteIds = new HashSet<>(current.favoriteIds);
+        if (favorite) {
+            favoriteIds.add(id);
+        } else {
+            favoriteIds.remove(id);
+        }
+
+        Snapshot next = new Snapshot(current.version + 1, current.recipes, Collections.unmodifiableSet(favoriteIds));
+        indexLock.writeLock().lock();
+        try {
+            if (indexed) index.setFavorite(id, favorite);
+            snapshot = next;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        storage.favoriteChanged(id, favorite, next);
+    }
+
+    /** Closes the storage, which writes out any changes it still holds. */
+    @Override
+    public synchronized void close() throws IOException {
+        storage.close();
+    }
+
+    /**
+     * The category dropdown as a test on recipe id and category, for recipes
+     * judged one at a time; the index answers it with {@link RecipeIndex#slotsIn}.
+     */
+    static BiPredicate<String, String> categoryFilter(String filter, Set<String> favoriteIds) {
+        return (id, category) -> {
+            if (filter.equals(ALL)) return true;
+            if (filter.equals(FAVORITES)) return favoriteIds.contains(id);
+            return category.equals(filter);
+        };
+    }
+
+    /** The index slots a query accepts; call with the read lock held. */
+    private BitSet accepted(String filter, Set<String> favoriteIds) {
+        return favoriteIds != null ? index.slotsIn(filter, favoriteIds) : index.slotsIn(filter);
+    }
+
+    private void ensureIndexed() {
+        if (indexed) return;
+        indexLock.writeLock().lock();
+        try {
+            if (!indexed) {
+                index.rebuild(snapshot.recipes, snapshot.favoriteIds);
+                indexed = true;
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    private void ensureStepsIndexed() {
+        ensureIndexed();
+        if (stepsIndexed) return;
+        indexLock.writeLock().lock();
+        try {
+            if (!stepsIndexed) {
+                index.indexSteps();
+                stepsIndexed = true;
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /** Records the slot of every recipe in a freshly laid out list. */
+    private RecipeList numbered(RecipeList recipes) {
+        slots.clear();
+        for (int slot = 0; slot < recipes.slots(); slot++) {
+            slots.put(recipes.atSlot(slot).id, slot);
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,438 @@
+package recipehaven;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless server mode: one recipe book shared by several terminals over a
+ * local HTTP/JSON API, instead of being owned by a single window.
+ *
+ * Requests run on a virtual thread each where the runtime has them (Java 21
+ * and later) and on a fixed pool of platform threads before that. Searches
+ * work on the repository's snapshots and share its index read lock, so they
+ * run in parallel with each other; changes are applied one at a time.
+ *
+ * Favorites are per user: a request names its user in the {@value #USER_HEADER}
+ * header, and the Favorites filter, the favorites endpoints and the
+ * {@code favorite} field of returned recipes use that user's
+ * {@link UserFavorites}. Requests without a user have no favorites. The book's
+ * own favorites remain those of the desktop app.
+ *
+ * <pre>
+ * GET    /recipes?q=&amp;category=&amp;limit=&amp;ranked=  search, in book order or ranked
+ * POST   /recipes                              add a recipe, 201 with the saved recipe
+ * GET    /recipes/{id}
+ * PUT    /recipes/{id}                         replace a recipe
+ * DELETE /recipes/{id}
+ * GET    /favorites                            the user's favorite recipes
+ * PUT    /favorites/{id}                       mark a favorite
+ * DELETE /favorites/{id}                       unmark a favorite
+ * POST   /shopping-list                        the shopping list for a meal plan
+ * </pre>
+ *
+ * Recipes are read and written as the JSON objects of {@link RecipeImporter}
+ * and {@link RecipeExporter}; searches answer
+ * {@code {"total":n,"recipes":[...]}}, where {@code total} counts every match
+ * and {@code recipes} holds up to {@code limit} of them. A meal plan is posted as plain text,
+ * a line per recipe holding its id and optionally how many times it is made,
+ * and answered with {@code {"aisles":[{"aisle":...,"items":[{"name":...,"amount":...}]}]}}.
+ * The server only listens on the loopback interface, since it has no
+ * authentication.
+ */
+class RecipeServer implements Closeable {
+    static final String USER_HEADER = "X-User";
+    static final int DEFAULT_PORT = 8080;
+
+    private static final String FAVORITES_DIR = "user_favorites";
+    private static final int DEFAULT_LIMIT = 50;
+    private static final long RANKED_BUDGET_MS = 200;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final int POOL_THREADS = Integer.getInteger("recipehaven.serverThreads",
+        Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+
+    private final RecipeRepository repository;
+    private final UserFavorites favorites;
+    // Shared, so every plan reuses the recipes already parsed
+    private final ShoppingList shoppingList = new ShoppingList();
+    private final HttpServer server;
+    private final ExecutorService executor = newRequestExecutor();
+
+    /** A failed request, answered with its status and message. */
+    private static final class RequestException extends Exception {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** Binds the port on the loopback interface; 0 picks a free one. */
+    RecipeServer(RecipeRepository repository, UserFavorites favorites, int port) throws IOException {
+        this.repository = repository;
+        this.favorites = favorites;
+        // The JDK server writes headers and body separately; without this, Nagle's algorithm
+        // holds the body back until the client's delayed ACK, some 40 ms per response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/recipes", exchange -> handle(exchange, this::recipes));
+        server.createContext("/favorites", exchange -> handle(exchange, this::favorites));
+        server.createContext("/shopping-list", exchange -> handle(exchange, this::shoppingList));
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests and waits briefly for those in progress. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /** One thread per request: virtual where the runtime has them, else from a fixed pool. */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // Built for Java 8, so the Java 21 API is looked up at run time
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(POOL_THREADS, r -> {
+                Thread thread = new Thread(r, "recipe-server-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, String user, String id) throws IOException, RequestException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Diagnostics.Span span = Diagnostics.REQUEST.start();
+        try {
+            String context = exchange.getHttpContext().getPath();
+            String rest = exchange.getRequestURI().getRawPath().substring(context.length());
+            String id = null;
+            if (rest.startsWith("/") && rest.length() > 1) {
+                id = decode(rest.substring(1));
+            } else if (!rest.isEmpty() && !rest.equals("/")) {
+                throw new RequestException(404, "Not found");
+            }
+            handler.handle(exchange, exchange.getRequestHeaders().getFirst(USER_HEADER), id);
+        } catch (RequestException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "Internal error: " + e.getMessage());
+        } finally {
+            exchange.close();
+            span.end();
+        }
+    }
+
+    // /recipes
+
+    private void recipes(HttpExchange exchange, String user, String id) throws IOException, RequestException {
+        String method = exchange.getRequestMethod();
+        if (id == null) {
+            if (method.equals("GET")) {
+                search(exchange, user);
+            } else if (method.equals("POST")) {
+                Recipe recipe = readRecipe(exchange, UUID.randomUUID().toString());
+                repository.save(recipe);
+                sendRecipe(exchange, 201, recipe, user);
+            } else {
+                throw notAllowed(exchange, "GET, POST");
+            }
+            return;
+        }
+
+        switch (method) {
+            case "GET":
+                sendRecipe(exchange, 200, find(id), user);
+                break;
+            case "PUT":
+                Recipe recipe = readRecipe(exchange, id);
+                if (!repository.replace(recipe)) throw new RequestException(404, "No recipe " + id);
+                sendRecipe(exchange, 200, recipe, user);
+                break;
+            case "DELETE":
+                if (!repository.delete(id)) throw new RequestException(404, "No recipe " + id);
+                favorites.forget(id);
+                send(exchange, 204, null);
+                break;
+            default:
+                throw notAllowed(exchange, "GET, PUT, DELETE");
+        }
+    }
+
+    private void search(HttpExchange exchange, String user) throws IOException, RequestException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String text = query.getOrDefault("q", "");
+        String filter = query.getOrDefault("category", RecipeRepository.ALL);
+        int limit = DEFAULT_LIMIT;
+        if (query.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(query.get("limit"));
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 0) throw new RequestException(400, "Bad limit: " + query.get("limit"));
+        }
+        Set<String> favoriteIds = favoritesOf(user);
+
+        List<Recipe> recipes;
+        int total;
+        if (Boolean.parseBoolean(query.get("ranked"))) {
+            RecipeIndex.Ranking ranking = repository.rankedSearch(text, filter, favoriteIds, limit, RANKED_BUDGET_MS);
+            recipes = ranking.recipes;
+            total = ranking.matches;
+        } else {
+            recipes = repository.search(text, filter, favoriteIds);
+            total = recipes.size();
+            if (recipes.size() > limit) recipes = recipes.subList(0, limit);
+        }
+        sendRecipes(exchange, total, recipes, favoriteIds);
+    }
+
+    // /favorites
+
+    private void favorites(HttpExchange exchange, String user, String id) throws IOException, RequestException {
+        if (user == null) throw new RequestException(400, "Favorites need a " + USER_HEADER + " header");
+        String method = exchange.getRequestMethod();
+        if (id == null) {
+            if (!method.equals("GET")) throw notAllowed(exchange, "GET");
+            Set<String> favoriteIds = favorites.get(user);
+            List<Recipe> recipes = repository.search("", RecipeRepository.FAVORITES, favoriteIds);
+            sendRecipes(exchange, recipes.size(), recipes, favoriteIds);
+            return;
+        }
+
+        if (!method.equals("PUT") && !method.equals("DELETE")) throw notAllowed(exchange, "PUT, DELETE");
+        find(id);
+        favorites.setFavorite(user, id, method.equals("PUT"));
+        send(exchange, 204, null);
+    }
+
+    // /shopping-list
+
+    private void shoppingList(HttpExchange exchange, String user, String id) throws IOException, RequestException {
+        if (id != null) throw new RequestException(404, "Not found");
+        if (!exchange.getRequestMethod().equals("POST")) throw notAllowed(exchange, "POST");
+        List<ShoppingList.Planned> plan = new ArrayList<>();
+        for (String line : readBody(exchange, "Meal plan").split("\n")) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) continue;
+            double times = 1;
+            if (fields.length > 1) {
+                try {
+                    times = Double.parseDouble(fields[1]);
+                } catch (NumberFormatException e) {
+                    times = -1;
+                }
+            }
+            if (fields.length > 2 || !ShoppingList.isValidScale(times)) {
+                throw new RequestException(400, "Bad plan line: " + line.trim());
+            }
+            plan.add(new ShoppingList.Planned(find(fields[0]), times));
+        }
+
+        StringWriter out = new StringWriter();
+        out.write("{\"aisles\":[");
+        boolean firstAisle = true;
+        for (Map.Entry<String, List<ShoppingList.Item>> aisle : shoppingList.generate(plan).entrySet()) {
+            if (!firstAisle) out.write(',');
+            firstAisle = false;
+            out.write("{\"aisle\":");
+            RecipeExporter.writeJsonString(out, aisle.getKey());
+            out.write(",\"items\":[");
+            for (int i = 0; i < aisle.getValue().size(); i++) {
+                ShoppingList.Item item = aisle.getValue().get(i);
+                out.write(i > 0 ? ",{\"name\":" : "{\"name\":");
+                RecipeExporter.writeJsonString(out, item.name);
+                out.write(",\"amount\":");
+                RecipeExporter.writeJsonString(out, item.amount);
+                out.write('}');
+            }
+            out.write("]}");
+        }
+        out.write("]}");
+        send(exchange, 200, out.toString());
+    }
+
+    // Requests
+
+    private Recipe find(String id) throws RequestException {
+        Recipe recipe = repository.get(id);
+        if (recipe == null) throw new RequestException(404, "No recipe " + id);
+        return recipe;
+    }
+
+    private Set<String> favoritesOf(String user) {
+        return user != null ? favorites.get(user) : Collections.<String>emptySet();
+    }
+
+    private static Recipe readRecipe(HttpExchange exchange, String id) throws IOException, RequestException {
+        String body = readBody(exchange, "Recipe");
+        Recipe recipe;
+        try {
+            recipe = RecipeImporter.readJson(new StringReader(body), id);
+        } catch (IOException e) {
+            throw new RequestException(400, "Bad recipe: " + e.getMessage());
+        }
+        if (recipe == null) throw new RequestException(400, "A recipe needs a name");
+        return recipe;
+    }
+
+    /** The request body as UTF-8 text; {@code what} names it in the error when it is too large. */
+    private static String readBody(HttpExchange exchange, String what) throws IOException, RequestException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+                if (body.size() > MAX_BODY_BYTES) throw new RequestException(413, what + " too large");
+            }
+        }
+        return body.toString("UTF-8");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                query.put(decode(pair), "");
+            } else {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static RequestException notAllowed(HttpExchange exchange, String allowed) {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        return new RequestException(405, "Method not allowed");
+    }
+
+    // Responses
+
+    private void sendRecipe(HttpExchange exchange, int status, Recipe recipe, String user)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        writeRecipe(out, recipe, favoritesOf(user).contains(recipe.id));
+        send(exchange, status, out.toString());
+    }
+
+    private static void sendRecipes(HttpExchange exchange, int total, List<Recipe> recipes, Set<String> favoriteIds)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        out.write("{\"total\":" + total + ",\"recipes\":[");
+        for (int i = 0; i < recipes.size(); i++) {
+            if (i > 0) out.write(',');
+            writeRecipe(out, recipes.get(i), favoriteIds.contains(recipes.get(i).id));
+        }
+        out.write("]}");
+        send(exchange, 200, out.toString());
+    }
+
+    private static void writeRecipe(Writer out, Recipe recipe, boolean favorite) throws IOException {
+        // Read without keeping, so lazily loaded details are not pinned in memory
+        RecipeExporter.writeJson(out, recipe, recipe.readIngredients(), recipe.readSteps(), favorite);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write("{\"error\":");
+        RecipeExporter.writeJsonString(out, message);
+        out.write('}');
+        send(exchange, status, out.toString());
+    }
+
+    /** Sends the status and a JSON body, or no body when it is null. */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * Serves the app's recipe book: {@code [port]}, {@value #DEFAULT_PORT} by
+     * default. Changes are written out when the process is stopped.
+     */
+    static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try {
+            Diagnostics.registerMBeans();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        RecipeStorage storage = new JournalStorage(Paths.get(RecipeHaven.DATA_FILE), Paths.get(RecipeHaven.LOG_FILE),
+            Paths.get(RecipeHaven.LEGACY_DATA_FILE), Paths.get(RecipeHaven.LEGACY_FAVORITES_FILE),
+            Throwable::printStackTrace);
+        Diagnostics.Span span = Diagnostics.LOAD.start();
+        RecipeRepository repository;
+        try {
+            repository = new RecipeRepository(storage);
+        } catch (JournalStorage.LockedException e) {
+            System.err.println(e.getMessage() + "; close it first.");
+            System.exit(1);
+            return;
+        }
+        span.end(repository.snapshot().recipes.size());
+        // Build the index now rather than on the first request
+        repository.search("", RecipeRepository.ALL);
+        UserFavorites favorites = new UserFavorites(Paths.get(FAVORITES_DIR));
+        favorites.load();
+
+        RecipeServer server = new RecipeServer(repository, favorites, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                repository.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "recipe-server-shutdown"));
+        server.start();
+        System.out.println("Serving " + repository.snapshot().recipes.size() + " recipes on http://"
+            + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port() + "/recipes");
+    }
+}
@@ -0,0 +1,63 @@
+package recipehaven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Where a {@link RecipeRepository} keeps its book. The repository loads the
+ * book once and then reports every change, one at a time and in order, along
+ * with the book as it stands after the change.
+ */
+interface RecipeStorage extends Closeable {
+    RecipeStore.Contents load() throws IOException;
+
+    void recipeSaved(Recipe recipe, RecipeRepository.Snapshot book);
+
+    /** A batch saved at once, such as an import. */
+    void recipesSaved(List<Recipe> recipes, RecipeRepository.Snapshot book);
+
+    void recipeDeleted(String id, RecipeRepository.Snapshot book);
+
+    void favoriteChanged(String id, boolean favorite, RecipeRepository.Snapshot book);
+
+    /** Keeps nothing: starts from the given book and forgets every change. */
+    class Memory implements RecipeStorage {
+        private final List<Recipe> recipes;
+        private final Set<String> favoriteIds;
+
+        Memory() {
+            this(Collections.emptyList(), Collections.emptySet());
+        }
+
+        Memory(List<Recipe> recipes, Set<String> favoriteIds) {
+            this.recipes = recipes;
+            this.favoriteIds = favoriteIds;
+        }
+
+        @Override
+        public RecipeStore.Contents load() {
+            return new RecipeStore.Contents(new ArrayList<>(recipes), new HashSet<>(favoriteIds));
+        }
+
+        @Override
+        public void recipeSaved(Recipe recipe, RecipeRepository.Snapshot book) {
+        }
+
+        @Override
+        public void recipesSaved(List<Recipe> recipes, RecipeRepository.Snapshot book) {
+        }
+
+        @Override
+        public void recipeDeleted(String id, RecipeRepository.Snapshot book) {
+        }
+
+        @Override
+        public void favoriteChanged(String id, boolean favorite, RecipeRepository.Snapshot book) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package recipehaven;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned binary file holding the whole recipe book: recipes and favorites.
+ *
+ * Layout of version 2 (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ *   int32 magic "RHVN", int32 version, int64 offset of the summaries
+ *   string table: count, then each string
+ *   details:      per recipe: ingredient count, ingredient refs, steps
+ *   summaries:    count, then per recipe
+ *                   id, name, category ref, ingredient count,
+ *                   refs of the first ingredients, offset of its details
+ *   favorites:    count, then each id
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8. Categories and
+ * ingredient lines repeat across recipes, so they are stored once in the
+ * string table and referenced by index. Ids in canonical UUID form take 16
+ * bytes instead of 36 characters.
+ *
+ * Loading memory-maps the file and decodes only the summaries, which hold
+ * what a list row shows. Full ingredient lists and steps stay in the mapping
+ * until a recipe is opened, and table strings are decoded on first use.
+ * Version 1 files, which interleave details with summaries, are still read
+ * eagerly.
+ *
+ * A save writes a temporary file next to the store and atomically renames it
+ * to the next generation, {@code <file>.<n>}, so a crash mid-save leaves the
+ * previous book intact. It never renames over the file a load mapped: recipes
+ * still read their details from that mapping, and Windows refuses to replace
+ * a mapped file. Older generations are deleted where the platform allows it;
+ * the rest go when the next load moves the newest back to the plain name,
+ * before mapping anything.
+ */
+class RecipeStore {
+    private static final int MAGIC = 0x5248564E; // "RHVN"
+    static final int VERSION = 2;
+
+    private static final int ID_STRING = 0;
+    private static final int ID_UUID = 1;
+    private static final int PREVIEW_INGREDIENTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The recipe book as read from or written to disk. */
+    static class Contents {
+        final List<Recipe> recipes;
+        final Set<String> favoriteIds;
+
+        Contents(List<Recipe> recipes, Set<String> favoriteIds) {
+            this.recipes = recipes;
+            this.favoriteIds = favoriteIds;
+        }
+    }
+
+    private final Path file;
+    // The newest snapshot and its generation, the plain file being 0; null until looked up
+    private volatile Path newest;
+    private volatile long generation;
+
+    RecipeStore(Path file) {
+        this.file = file;
+    }
+
+    boolean exists() throws IOException {
+        return findNewest() != null;
+    }
+
+    long size() throws IOException {
+        Path current = newest != null ? newest : findNewest();
+        return current != null && Files.exists(current) ? Files.size(current) : 0;
+    }
+
+    Contents load() throws IOException {
+        Path current = findNewest();
+        if (current == null) throw new NoSuchFileException(file.toString());
+        if (!current.equals(file)) current = settle(current);
+
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(current, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Recipe file too large: " + file);
+            // The mapping stays valid after the channel is closed
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        try {
+            return decode(buf);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt recipe file: " + file, e);
+        }
+    }
+
+    /**
+     * Moves the newest generation back to the plain name, deleting the older
+     * ones. Nothing of them is mapped before a load, so this succeeds unless
+     * an earlier load in this process still maps one; the newest is then read
+     * where it is.
+     */
+    private Path settle(Path current) {
+        try {
+            for (Path snapshot : snapshots()) {
+                if (!snapshot.equals(current)) Files.deleteIfExists(snapshot);
+            }
+            Files.move(current, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            newest = file;
+            generation = 0;
+            return file;
+        } catch (IOException e) {
+            return current;
+        }
+    }
+
+    /** Looks up the newest snapshot on disk, or null if there is none. */
+    private Path findNewest() throws IOException {
+        Path found = null;
+        long foundGeneration = -1;
+        for (Path snapshot : snapshots()) {
+            long g = generationOf(snapshot);
+            if (g > foundGeneration) {
+                found = snapshot;
+                foundGeneration = g;
+            }
+        }
+        newest = found;
+        generation = Math.max(foundGeneration, 0);
+        return found;
+    }
+
+    /** The plain file and every generation next to it, in no particular order. */
+    private List<Path> snapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        Path dir = file.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, path -> generationOf(path) >= 0)) {
+            for (Path path : files) {
+                snapshots.add(file.resolveSibling(path.getFileName()));
+            }
+        }
+        return snapshots;
+    }
+
+    /** 0 for the plain file, n for {@code <file>.<n>}, -1 for any other file. */
+    private long generationOf(Path path) {
+        String name = path.getFileName().toString();
+        String plain = file.getFileName().toString();
+        if (name.equals(plain)) return 0;
+        if (!name.startsWith(plain + ".") || name.length() == plain.length() + 1
+                || name.length() > plain.length() + 19) {
+            return -1;
+        }
+        for (int i = plain.length() + 1; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') return -1;
+        }
+        return Long.parseLong(name.substring(plain.length() + 1));
+    }
+
+    private Contents decode(ByteBuffer buf) throws IOException {
+        Input in = new Input(buf);
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC) {
+            throw new IOException("Not a recipe file: " + file);
+        }
+        int version = buf.getInt();
+        if (version == 1) {
+            return decodeV1(in);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported recipe file version " + version);
+        }
+
+        long summaryOffset = buf.getLong();
+        StringTable table = new StringTable(buf, in.readVarInt());
+
+        // Summaries are all read now; a heap copy decodes much faster than the mapping
+        buf.position(checkOffset(buf, summaryOffset));
+        ByteBuffer summaries = ByteBuffer.allocate(buf.remaining());
+        summaries.put(buf).flip();
+        in = new Input(summaries);
+
+        int recipeCount = in.readVarInt();
+        List<Recipe> recipes = new ArrayList<>(recipeCount);
+        for (int i = 0; i < recipeCount; i++) {
+            String id = in.readId();
+            String name = in.readString();
+            String category = table.get(in.readVarInt());
+            int ingredientCount = in.readVarInt();
+            int previewCount = Math.min(PREVIEW_INGREDIENTS, ingredientCount);
+            List<String> preview = new ArrayList<>(previewCount);
+            for (int j = 0; j < previewCount; j++) {
+                preview.add(table.get(in.readVarInt()));
+            }
+            int detailOffset = checkOffset(buf, in.readVarInt());
+            recipes.add(new Recipe(id, name, category, preview, ingredientCount,
+                new MappedDetails(buf, table, detailOffset)));
+        }
+
+        return new Contents(recipes, readFavorites(in));
+    }
+
+    private Contents decodeV1(Input in) throws IOException {
+        String[] table = new String[in.readVarInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readString();
+        }
+
+        int recipeCount = in.readVarInt();
+        List<Recipe> recipes = new ArrayList<>(recipeCount);
+        for (int i = 0; i < recipeCount; i++) {
+            String id = in.readId();
+            String name = in.readString();
+            String category = table[in.readVarInt()];
+            int ingredientCount = in.readVarInt();
+            List<String> ingredients = new ArrayList<>(ingredientCount);
+            for (int j = 0; j < ingredientCount; j++) {
+                ingredients.add(table[in.readVarInt()]);
+            }
+            String steps = in.readString();
+            recipes.add(new Recipe(id, name, category, ingredients, steps));
+        }
+
+        return new Contents(recipes, readFavorites(in));
+    }
+
+    private static Set<String> readFavorites(Input in) throws IOException {
+        int favoriteCount = in.readVarInt();
+        Set<String> favoriteIds = new HashSet<>();
+        for (int i = 0; i < favoriteCount; i++) {
+            favoriteIds.add(in.readId());
+        }
+        return favoriteIds;
+    }
+
+    private static int checkOffset(ByteBuffer buf, long offset) throws IOException {
+        if (offset < 0 || offset > buf.limit()) throw new IOException("Corrupt offset " + offset);
+        return (int) offset;
+    }
+
+    void save(List<Recipe> recipes, Set<String> favoriteIds) throws IOException {
+        // Unloaded details are read from the old mapping once and not kept
+        List<List<String>> ingredientLists = new ArrayList<>(recipes.size());
+        for (Recipe recipe : recipes) {
+            ingredientLists.add(recipe.readIngredients());
+        }
+
+        // Build the string table of repeated values
+        Map<String, Integer> refs = new LinkedHashMap<>();
+        for (int i = 0; i < recipes.size(); i++) {
+            refs.putIfAbsent(recipes.get(i).category, refs.size());
+            for (String ing : ingredientLists.get(i)) {
+                refs.putIfAbsent(ing, refs.size());
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0); // summary offset, patched below
+
+            out.writeVarInt(refs.size());
+            for (String value : refs.keySet()) {
+                out.writeString(value);
+            }
+
+            int[] detailOffsets = new int[recipes.size()];
+            for (int i = 0; i < recipes.size(); i++) {
+                detailOffsets[i] = checkedOffset(out.position());
+                List<String> ingredients = ingredientLists.get(i);
+                out.writeVarInt(ingredients.size());
+                for (String ing : ingredients) {
+                    out.writeVarInt(refs.get(ing));
+                }
+                out.writeString(recipes.get(i).readSteps());
+            }
+
+            long summaryOffset = out.position();
+            out.writeVarInt(recipes.size());
+            for (int i = 0; i < recipes.size(); i++) {
+                Recipe recipe = recipes.get(i);
+                List<String> ingredients = ingredientLists.get(i);
+                out.writeId(recipe.id);
+                out.writeString(recipe.name);
+                out.writeVarInt(refs.get(recipe.category));
+                out.writeVarInt(ingredients.size());
+                for (int j = 0; j < Math.min(PREVIEW_INGREDIENTS, ingredients.size()); j++) {
+                    out.writeVarInt(refs.get(ingredients.get(j)));
+                }
+                out.writeVarInt(detailOffsets[i]);
+            }
+
+            out.writeVarInt(favoriteIds.size());
+            for (String id : favoriteIds) {
+                out.writeId(id);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putLong(summaryOffset).flip();
+            while (header.hasRemaining()) channel.write(header, 8 + header.position());
+            channel.force(true);
+        }
+
+        // A new name each time, never the one a load mapped
+        if (newest == null) findNewest();
+        long next = generation + 1;
+        Path target = file.resolveSibling(file.getFileName() + "." + next);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        newest = target;
+        generation = next;
+
+        for (Path snapshot : snapshots()) {
+            if (snapshot.equals(target)) continue;
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException e) {
+                // Still mapped; the next load deletes it
+            }
+        }
+    }
+
+    private static int checkedOffset(long position) throws IOException {
+        if (position > Integer.MAX_VALUE) throw new IOException("Recipe book too large");
+        return (int) position;
+    }
+
+    /** Table strings of a mapped file, decoded on first use. */
+    private static class StringTable {
+        private final ByteBuffer buf;
+        private final int[] offsets;
+        private final String[] decoded;
+
+        /** Records where each string starts and leaves the buffer positioned after the table. */
+        StringTable(ByteBuffer buf, int count) throws IOException {
+            this.buf = buf;
+            this.offsets = new int[count];
+            this.decoded = new String[count];
+            Input in = new Input(buf);
+            for (int i = 0; i < count; i++) {
+                offsets[i] = buf.position();
+                int length = in.readVarInt();
+                buf.position(buf.position() + length);
+            }
+        }
+
+        String get(int index) throws IOException {
+            // Racing decodes produce equal immutable strings, so no locking
+            String value = decoded[index];
+            if (value == null) {
+                ByteBuffer view = buf.duplicate();
+                view.position(offsets[index]);
+                value = new Input(view).readString();
+                decoded[index] = value;
+            }
+            return value;
+        }
+    }
+
+    /** Reads one recipe's ingredients and steps from the mapped file. */
+    private static class MappedDetails implements Recipe.Details {
+        private final ByteBuffer buf;
+        private final StringTable table;
+        private final int offset;
+
+        MappedDetails(ByteBuffer buf, StringTable table, int offset) {
+            this.buf = buf;
+            this.table = table;
+            this.offset = offset;
+        }
+
+        public List<String> readIngredients() {
+            try {
+                Input in = input();
+                int count = in.readVarInt();
+                List<String> ingredients = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    ingredients.add(table.get(in.readVarInt()));
+                }
+                return ingredients;
+            } catch (IOException | RuntimeException e) {
+                throw new UncheckedIOException(new IOException("Corrupt recipe details", e));
+            }
+        }
+
+        public String readSteps() {
+            try {
+                Input in = input();
+                int count = in.readVarInt();
+                for (int i = 0; i < count; i++) {
+                    in.readVarInt();
+                }
+                return in.readString();
+            } catch (IOException | RuntimeException e) {
+                throw new UncheckedIOException(new IOException("Corrupt recipe details", e));
+            }
+        }
+
+        private Input input() {
+            // Each read gets its own position, so concurrent readers do not interfere
+            ByteBuffer view = buf.duplicate();
+            view.position(offset);
+            return new Input(view);
+        }
+    }
+
+    /** Reads the Java-serialized files written by earlier versions. */
+    @SuppressWarnings("unchecked")
+    static Contents readLegacy(Path recipesFile, Path favoritesFile) throws IOException {
+        List<Recipe> recipes = new ArrayList<>();
+        Set<String> favoriteIds = new HashSet<>();
+        try {
+            if (Files.exists(recipesFile)) {
+                try (ObjectInputStream ois = new LegacyInputStream(
+                        new BufferedInputStream(Files.newInputStream(recipesFile)))) {
+                    recipes = (List<Recipe>) ois.readObject();
+                }
+            }
+            if (Files.exists(favoritesFile)) {
+                try (ObjectInputStream ois = new ObjectInputStream(
+                        new BufferedInputStream(Files.newInputStream(favoritesFile)))) {
+                    favoriteIds = (Set<String>) ois.readObject();
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable legacy recipe data", e);
+        }
+        return new Contents(recipes, favoriteIds);
+    }
+
+    /** Resolves the unpackaged Recipe class that legacy files were written with. */
+    private static class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (desc.getName().equals("Recipe")) return Recipe.class;
+            return super.resolveClass(desc);
+        }
+    }
+
+    /** Buffered writer for the store's primitive encodings; also used by {@link RecipeLog}. */
+    static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        private long flushed;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeByte(int value) throws IOException {
+            ensure(1);
+            buf.put((byte) value);
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buf.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            buf.putLong(value);
+        }
+
+        /** Number of bytes written so far, flushed or not. */
+        long position() {
+            return flushed + buf.position();
+        }
+
+        void writeVarInt(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buf.put((byte) value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            if (bytes.length > buf.capacity()) {
+                flush();
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) channel.write(wrapped);
+                flushed += bytes.length;
+            } else {
+                ensure(bytes.length);
+                buf.put(bytes);
+            }
+        }
+
+        void writeId(String id) throws IOException {
+            UUID uuid = parseUuid(id);
+            if (uuid == null) {
+                ensure(1);
+                buf.put((byte) ID_STRING);
+                writeString(id);
+            } else {
+                ensure(17);
+                buf.put((byte) ID_UUID);
+                buf.putLong(uuid.getMostSignificantBits());
+                buf.putLong(uuid.getLeastSignificantBits());
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            flushed += buf.remaining();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        private static UUID parseUuid(String id) {
+            if (id.length() != 36) return null;
+            try {
+                UUID uuid = UUID.fromString(id);
+                // Only ids that round-trip exactly can be stored compactly
+                return uuid.toString().equals(id) ? uuid : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /** Reader over a heap or mapped buffer holding data written by {@link Output}. */
+    static class Input {
+        private final ByteBuffer buf;
+
+        Input(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        boolean hasRemaining() {
+            return buf.hasRemaining();
+        }
+
+        byte readByte() {
+            return buf.get();
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buf.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+            if (buf.hasArray()) {
+                String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length,
+                    StandardCharsets.UTF_8);
+                buf.position(buf.position() + length);
+                return value;
+            }
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String readId() throws IOException {
+            byte kind = buf.get();
+            if (kind == ID_UUID) {
+                return new UUID(buf.getLong(), buf.getLong()).toString();
+            }
+            return readString();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package recipehaven;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs searches off the Event Dispatch Thread. Requests made while typing are
+ * coalesced by a debounce timer, a newer request cancels the one still running,
+ * and only the result of the newest request is published back on the EDT.
+ *
+ * Searches run one at a time on a background thread. Every method except the
+ * submitted queries themselves must be called on the EDT.
+ */
+class SearchPipeline<T> {
+    private final ExecutorService executor;
+    private final Timer debounceTimer;
+    private final Consumer<T> publisher;
+
+    private Callable<T> pendingQuery;
+    private Future<?> running;
+    private long generation;
+    private long finishedGeneration;
+
+    SearchPipeline(int debounceMillis, Consumer<T> publisher) {
+        this.publisher = publisher;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "recipe-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.debounceTimer = new Timer(debounceMillis, e -> submitPending());
+        this.debounceTimer.setRepeats(false);
+    }
+
+    /** Schedules a search once input has been quiet for the debounce window. */
+    void search(Callable<T> query) {
+        pendingQuery = query;
+        debounceTimer.restart();
+    }
+
+    /** Runs a search right away, superseding any pending or running one. */
+    void searchNow(Callable<T> query) {
+        debounceTimer.stop();
+        pendingQuery = query;
+        submitPending();
+    }
+
+    /**
+     * Whether a search is waiting, running or about to publish. Its result may
+     * not reflect changes made since it started.
+     */
+    boolean isBusy() {
+        return pendingQuery != null || finishedGeneration != generation;
+    }
+
+    void shutdown() {
+        debounceTimer.stop();
+        executor.shutdownNow();
+    }
+
+    private void submitPending() {
+        Callable<T> query = pendingQuery;
+        pendingQuery = null;
+        if (query == null) return;
+
+        if (running != null) running.cancel(true);
+        long requestGeneration = ++generation;
+        running = executor.submit(() -> {
+            T result;
+            try {
+                result = query.call();
+            } catch (CancellationException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> finished(requestGeneration));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (finished(requestGeneration)) publisher.accept(result);
+            });
+        });
+    }
+
+    /** Records that a search is done; true if it is still the newest. */
+    private boolean finished(long requestGeneration) {
+        if (requestGeneration != generation) return false;
+        finishedGeneration = requestGeneration;
+        return true;
+    }
+}
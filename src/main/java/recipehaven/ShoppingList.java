@@ -0,0 +1,394 @@
+package recipehaven;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Turns a meal plan into one shopping list: the ingredient lines of the
+ * planned recipes are parsed into {@link Ingredient}s, scaled by how many
+ * times each recipe is made, and lines naming the same canonical ingredient
+ * are added up, converted to common units and grouped by aisle.
+ *
+ * Amounts are added up per kind of unit: volumes in millilitres, weights in
+ * grams, plain counts, and every other unit (cloves, cans, pinches) on its
+ * own. Volume and weight of one ingredient are listed side by side, since
+ * converting between them needs its density. Totals are shown in US units
+ * when every line used them and in metric otherwise. Lines without an amount,
+ * such as "salt to taste", are listed as needed.
+ *
+ * A plan of more than a few dozen recipes is reduced as a parallel stream over
+ * the recipes' parsed lines.
+ * Parsed lines are cached by recipe id and version: recipes are values, so an
+ * edit saves a new object, and the cache keeps the object it parsed. Making
+ * the list again after an edit parses only the edited recipe.
+ *
+ * Thread-safe.
+ */
+final class ShoppingList {
+    static final String OTHER_AISLE = "Other";
+
+    // The most times one recipe can be planned; more is a typo rather than a plan
+    static final double MAX_SCALE = 10_000;
+
+    // The cache starts over beyond this many recipes
+    private static final int MAX_CACHED_RECIPES = 50_000;
+    // Smaller plans are added up on the calling thread; splitting them costs more than it saves
+    private static final int PARALLEL_PLAN = 64;
+
+    // Kinds of amount
+    private static final int VOLUME = 0;
+    private static final int WEIGHT = 1;
+    private static final int COUNT = 2;
+    private static final int OTHER = 3;
+    private static final int UNMEASURED = 4;
+
+    private static final Map<String, Double> MILLILITRES = new HashMap<>();
+    private static final Map<String, Double> GRAMS = new HashMap<>();
+    private static final Set<String> METRIC = new HashSet<>(Arrays.asList("ml", "l", "g", "kg"));
+    private static final double CUP = 236.588;
+    private static final double TBSP = 14.787;
+    private static final double TSP = 4.929;
+    private static final double OUNCE = 28.3495;
+    private static final double POUND = 453.592;
+
+    // Aisles in store order; names are looked up by their longest run of words in the table
+    private static final List<String> AISLES = Collections.unmodifiableList(Arrays.asList(
+        "Produce", "Meat & Seafood", "Dairy & Eggs", "Baking", "Pantry", "Spices & Seasonings", OTHER_AISLE));
+    private static final Map<String, String> AISLE_WORDS = new HashMap<>();
+    // An ingredient bought only in these comes from the pantry aisle, whatever it is
+    private static final Set<String> PACKAGED = new HashSet<>(Arrays.asList("can", "jar"));
+    private static final String PACKAGED_AISLE = "Pantry";
+
+    static {
+        MILLILITRES.put("ml", 1.0);
+        MILLILITRES.put("l", 1000.0);
+        MILLILITRES.put("tsp", TSP);
+        MILLILITRES.put("tbsp", TBSP);
+        MILLILITRES.put("cup", CUP);
+        MILLILITRES.put("pint", 2 * CUP);
+        MILLILITRES.put("quart", 4 * CUP);
+        GRAMS.put("g", 1.0);
+        GRAMS.put("kg", 1000.0);
+        GRAMS.put("oz", OUNCE);
+        GRAMS.put("lb", POUND);
+
+        aisle("Produce", "garlic", "onion", "shallot", "tomato", "potato", "carrot", "celery", "spinach",
+            "lettuce", "kale", "cabbage", "broccoli", "cauliflower", "mushroom", "bell pepper", "zucchini",
+            "cucumber", "eggplant", "lemon", "lime", "orange", "apple", "banana", "berry", "strawberry",
+            "blueberry", "avocado", "ginger", "basil", "cilantro", "parsley", "mint", "dill", "scallion",
+            "leek", "corn", "pea", "squash", "pumpkin", "tofu", "lemon juice", "lime juice");
+        aisle("Meat & Seafood", "chicken", "beef", "pork", "lamb", "turkey", "bacon", "ham", "sausage",
+            "salmon", "tuna", "cod", "fish", "shrimp", "prawn", "crab", "mussel");
+        aisle("Dairy & Eggs", "egg", "milk", "buttermilk", "butter", "cream", "yogurt", "cheese", "parmesan",
+            "mozzarella", "cheddar", "feta", "ricotta", "mascarpone", "orange juice");
+        aisle("Baking", "flour", "sugar", "baking powder", "baking soda", "yeast", "extract", "cocoa",
+            "chocolate", "honey", "syrup", "cornstarch", "cornmeal");
+        aisle("Pantry", "rice", "pasta", "noodle", "spaghetti", "oat", "bread", "breadcrumb", "oil", "vinegar",
+            "soy sauce", "sauce", "bean", "chickpea", "lentil", "broth", "stock", "soup", "coconut milk",
+            "coconut cream", "almond", "walnut", "peanut", "nut", "peanut butter", "almond butter",
+            "tomato paste", "mustard", "ketchup", "mayonnaise", "salsa", "jam", "curd", "canned");
+        aisle("Spices & Seasonings", "salt", "black pepper", "pepper", "cinnamon", "oregano", "thyme",
+            "rosemary", "paprika", "cumin", "nutmeg", "chili", "turmeric", "bay leaf", "clove", "curry",
+            "garlic powder", "onion powder", "chili powder", "curry powder", "ground ginger");
+    }
+
+    private static void aisle(String aisle, String... names) {
+        for (String name : names) {
+            AISLE_WORDS.put(name, aisle);
+        }
+    }
+
+    /** A recipe in a meal plan and how many times it is made; 0.5 halves it. */
+    static final class Planned {
+        final Recipe recipe;
+        final double scale;
+
+        Planned(Recipe recipe, double scale) {
+            this.recipe = recipe;
+            this.scale = scale;
+        }
+    }
+
+    /** Whether a recipe can be planned this many times: above 0, at most {@link #MAX_SCALE}, not NaN. */
+    static boolean isValidScale(double scale) {
+        return scale > 0 && scale <= MAX_SCALE;
+    }
+
+    /** One entry of the list: an ingredient and how much of it to buy. */
+    static final class Item {
+        final String name;
+        final String aisle;
+        final String amount;
+
+        private Item(String name, String aisle, String amount) {
+            this.name = name;
+            this.aisle = aisle;
+            this.amount = amount;
+        }
+
+        @Override
+        public String toString() {
+            return amount.isEmpty() ? name : name + " - " + amount;
+        }
+    }
+
+    /** One parsed ingredient line, with its amount in the base unit of its kind. */
+    private static final class Line {
+        final int ingredient;
+        final int kind;
+        final String unit;
+        final double amount;
+        final boolean metric;
+
+        Line(Ingredient parsed) {
+            this.ingredient = parsed.id;
+            this.unit = parsed.unit;
+            this.metric = METRIC.contains(parsed.unit);
+            Double millilitres = MILLILITRES.get(parsed.unit);
+            Double grams = GRAMS.get(parsed.unit);
+            if (Double.isNaN(parsed.quantity)) {
+                kind = UNMEASURED;
+                amount = 0;
+            } else if (millilitres != null) {
+                kind = VOLUME;
+                amount = parsed.quantity * millilitres;
+            } else if (grams != null) {
+                kind = WEIGHT;
+                amount = parsed.quantity * grams;
+            } else {
+                kind = parsed.unit.equals(Ingredient.NO_UNIT) ? COUNT : OTHER;
+                amount = parsed.quantity;
+            }
+        }
+    }
+
+    /** A recipe's parsed lines and the version of the recipe they came from. */
+    private static final class Parsed {
+        final Recipe version;
+        final Line[] lines;
+
+        Parsed(Recipe version, Line[] lines) {
+            this.version = version;
+            this.lines = lines;
+        }
+    }
+
+    /** How much of one ingredient the plan needs so far. */
+    private static final class Amount {
+        double millilitres;
+        double grams;
+        double count;
+        boolean hasVolume;
+        boolean hasWeight;
+        boolean hasCount;
+        // Whether any volume or weight line was metric
+        boolean metricVolume;
+        boolean metricWeight;
+        boolean unmeasured;
+        // Other units and their totals; rarely more than one
+        Map<String, Double> other;
+
+        void add(Line line, double scale) {
+            switch (line.kind) {
+                case VOLUME:
+                    millilitres += line.amount * scale;
+                    hasVolume = true;
+                    metricVolume |= line.metric;
+                    break;
+                case WEIGHT:
+                    grams += line.amount * scale;
+                    hasWeight = true;
+                    metricWeight |= line.metric;
+                    break;
+                case COUNT:
+                    count += line.amount * scale;
+                    hasCount = true;
+                    break;
+                case OTHER:
+                    if (other == null) other = new TreeMap<>();
+                    other.merge(line.unit, line.amount * scale, Double::sum);
+                    break;
+                default:
+                    unmeasured = true;
+            }
+        }
+
+        void addAll(Amount more) {
+            millilitres += more.millilitres;
+            grams += more.grams;
+            count += more.count;
+            hasVolume |= more.hasVolume;
+            hasWeight |= more.hasWeight;
+            hasCount |= more.hasCount;
+            metricVolume |= more.metricVolume;
+            metricWeight |= more.metricWeight;
+            unmeasured |= more.unmeasured;
+            if (more.other != null) {
+                if (other == null) other = new TreeMap<>();
+                for (Map.Entry<String, Double> entry : more.other.entrySet()) {
+                    other.merge(entry.getKey(), entry.getValue(), Double::sum);
+                }
+            }
+        }
+
+        /** Whether every line counted cans or jars, as in "1 (14 oz) can tomatoes". */
+        boolean isPackaged() {
+            return other != null && PACKAGED.containsAll(other.keySet())
+                && !hasVolume && !hasWeight && !hasCount && !unmeasured;
+        }
+
+        String describe() {
+            List<String> parts = new ArrayList<>();
+            if (hasVolume) parts.add(metricVolume ? metricVolume(millilitres) : usVolume(millilitres));
+            if (hasWeight) parts.add(metricWeight ? metricWeight(grams) : usWeight(grams));
+            if (hasCount) parts.add(number(count));
+            if (other != null) {
+                for (Map.Entry<String, Double> entry : other.entrySet()) {
+                    parts.add(number(entry.getValue()) + " " + plural(entry.getKey(), entry.getValue()));
+                }
+            }
+            if (unmeasured && parts.isEmpty()) return "as needed";
+            if (unmeasured) parts.add("more as needed");
+            return String.join(" + ", parts);
+        }
+    }
+
+    /** Totals by ingredient id; the container the reduction fills. */
+    private static final class Totals {
+        final Map<Integer, Amount> byIngredient = new HashMap<>();
+
+        void add(Line[] lines, double scale) {
+            for (Line line : lines) {
+                byIngredient.computeIfAbsent(line.ingredient, id -> new Amount()).add(line, scale);
+            }
+        }
+
+        void addAll(Totals more) {
+            for (Map.Entry<Integer, Amount> entry : more.byIngredient.entrySet()) {
+                Amount amount = byIngredient.get(entry.getKey());
+                if (amount == null) {
+                    byIngredient.put(entry.getKey(), entry.getValue());
+                } else {
+                    amount.addAll(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private final Map<String, Parsed> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The list for the plan: its items by aisle, aisles in store order and
+     * items by name, leaving out aisles with nothing to buy.
+     */
+    Map<String, List<Item>> generate(List<Planned> plan) {
+        Stream<Planned> recipes = plan.size() >= PARALLEL_PLAN ? plan.parallelStream() : plan.stream();
+        Totals totals = recipes.collect(Totals::new,
+            (sum, planned) -> sum.add(lines(planned.recipe), planned.scale), Totals::addAll);
+
+        List<Item> items = new ArrayList<>(totals.byIngredient.size());
+        for (Map.Entry<Integer, Amount> entry : totals.byIngredient.entrySet()) {
+            String name = IngredientDictionary.name(entry.getKey());
+            Amount amount = entry.getValue();
+            String aisle = amount.isPackaged() ? PACKAGED_AISLE : aisleOf(name);
+            items.add(new Item(name, aisle, amount.describe()));
+        }
+        items.sort(Comparator.comparing((Item item) -> item.name));
+
+        Map<String, List<Item>> byAisle = new LinkedHashMap<>();
+        for (String aisle : AISLES) {
+            byAisle.put(aisle, new ArrayList<>());
+        }
+        for (Item item : items) {
+            byAisle.get(item.aisle).add(item);
+        }
+        byAisle.values().removeIf(List::isEmpty);
+        return byAisle;
+    }
+
+    /** The list as plain text, an aisle heading above its items. */
+    static String format(Map<String, List<Item>> list) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<Item>> aisle : list.entrySet()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(aisle.getKey()).append('\n');
+            for (Item item : aisle.getValue()) {
+                sb.append("  ").append(item).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Recipes whose parsed lines are cached. */
+    int cachedRecipes() {
+        return cache.size();
+    }
+
+    /** The recipe's parsed lines, from the cache while the recipe is the version parsed. */
+    private Line[] lines(Recipe recipe) {
+        Parsed parsed = cache.get(recipe.id);
+        if (parsed != null && parsed.version == recipe) return parsed.lines;
+
+        List<String> ingredients = recipe.readIngredients();
+        Line[] lines = new Line[ingredients.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new Line(Ingredient.parse(ingredients.get(i)));
+        }
+        if (cache.size() >= MAX_CACHED_RECIPES) cache.clear();
+        cache.put(recipe.id, new Parsed(recipe, lines));
+        return lines;
+    }
+
+    /**
+     * The aisle of a canonical ingredient name, from the longest run of its
+     * words in the table, the last such run when several are as long: "peanut
+     * butter" is pantry though "butter" is dairy, and "red bell pepper" produce.
+     */
+    static String aisleOf(String name) {
+        String[] words = name.split(" ");
+        for (int length = words.length; length > 0; length--) {
+            for (int start = words.length - length; start >= 0; start--) {
+                String aisle = AISLE_WORDS.get(String.join(" ", Arrays.asList(words).subList(start, start + length)));
+                if (aisle != null) return aisle;
+            }
+        }
+        return OTHER_AISLE;
+    }
+
+    private static String usVolume(double millilitres) {
+        if (millilitres >= CUP / 4) return number(millilitres / CUP) + " " + plural("cup", millilitres / CUP);
+        if (millilitres >= TBSP) return number(millilitres / TBSP) + " tbsp";
+        return number(millilitres / TSP) + " tsp";
+    }
+
+    private static String metricVolume(double millilitres) {
+        return millilitres >= 1000 ? number(millilitres / 1000) + " l" : number(millilitres) + " ml";
+    }
+
+    private static String usWeight(double grams) {
+        return grams >= POUND ? number(grams / POUND) + " lb" : number(grams / OUNCE) + " oz";
+    }
+
+    private static String metricWeight(double grams) {
+        return grams >= 1000 ? number(grams / 1000) + " kg" : number(grams) + " g";
+    }
+
+    /** Up to two decimals, without trailing zeros. */
+    static String number(double value) {
+        // String.format would cost more than adding up the plan
+        long hundredths = Math.round(value * 100);
+        StringBuilder sb = new StringBuilder().append(hundredths / 100);
+        int fraction = (int) (hundredths % 100);
+        if (fraction != 0) {
+            sb.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) sb.append(fraction % 10);
+        }
+        return sb.toString();
+    }
+
+    private static String plural(String unit, double amount) {
+        if (amount <= 1) return unit;
+        return unit.endsWith("ch") || unit.endsWith("sh") ? unit + "es" : unit + "s";
+    }
+}
@@ -0,0 +1,22 @@
+package recipehaven;
+
+/**
+ * Latencies of one stage of the app, as published over JMX by
+ * {@link Diagnostics}. Public because JMX requires MXBean interfaces to be.
+ */
+public interface StageMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    /** Percentiles are upper bounds, accurate to within a factor of two. */
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    void reset();
+}
@@ -0,0 +1,551 @@
+package recipehaven;
+
+import java.util.*;
+
+/**
+ * Positional full-text index over the cooking steps, part of the
+ * {@link RecipeIndex} and keyed by its slots.
+ *
+ * Steps are split into words, lowercased runs of letters and digits. Every
+ * word has a posting list: for each slot whose steps use it, in increasing
+ * order, the gap from the previous slot, the number of occurrences and the
+ * gaps between the word positions, all as varints. Gaps are small, so most
+ * numbers take one byte; a word used once in a slot, the common case, has its
+ * count folded into the low bit of the slot gap. The lists come to well under
+ * half the size of the text they index.
+ *
+ * A query matches steps that contain its words as a phrase, consecutively and
+ * in order, the last word also as the start of a longer one, so a query keeps
+ * matching while it is typed. Punctuation is ignored: "20 minutes" matches
+ * "Simmer for 20 minutes, stirring".
+ *
+ * Slots only grow, so added recipes are appended to the lists. Edited and
+ * removed slots are masked out rather than cut from the lists; the new words
+ * of edited slots are kept unencoded until {@value #MAX_PENDING} have gathered
+ * or masked slots outnumber the live ones, and then every list is re-encoded
+ * once.
+ *
+ * Not thread-safe; guarded along with the {@link RecipeIndex}.
+ */
+final class StepIndex {
+    private static final int MAX_PENDING = 512;
+
+    // Word dictionary; ids are kept until the next clear
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    // The same words in order, for prefix lookups
+    private final TreeMap<String, Integer> sortedTerms = new TreeMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+
+    // Slots whose encoded entries are stale
+    private final BitSet masked = new BitSet();
+    // Word ids by position of the slots edited since the last re-encode
+    private final TreeMap<Integer, int[]> pending = new TreeMap<>();
+    private int lastSlot = -1;
+    private int liveSlots;
+
+    /** One word's posting list. */
+    private static final class Postings {
+        byte[] bytes = new byte[8];
+        int length;
+        int lastSlot = -1;
+
+        /** Appends an entry for a slot above any in the list, with its ascending positions. */
+        void append(int slot, int[] positions, int count) {
+            int needed = length + 10 + 5 * count;
+            if (needed > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+
+            length = writeVarint(bytes, length, (slot - lastSlot) << 1 | (count == 1 ? 1 : 0));
+            if (count != 1) length = writeVarint(bytes, length, count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                length = writeVarint(bytes, length, positions[i] - previous);
+                previous = positions[i];
+            }
+            lastSlot = slot;
+        }
+    }
+
+    /** Reads a posting list one slot at a time. */
+    private static final class Cursor {
+        private final byte[] bytes;
+        private final int end;
+        private int offset;
+        // Whether the current slot's positions are still to be read or skipped
+        private boolean unread;
+        int slot = -1;
+        int count;
+
+        Cursor(Postings postings) {
+            this.bytes = postings.bytes;
+            this.end = postings.length;
+        }
+
+        /** Moves to the next slot; false at the end of the list. */
+        boolean advance() {
+            if (unread) {
+                // Every varint ends with a byte below 0x80
+                for (int left = count; left > 0; ) {
+                    if (bytes[offset++] >= 0) left--;
+                }
+            }
+            if (offset >= end) {
+                slot = Integer.MAX_VALUE;
+                unread = false;
+                return false;
+            }
+            int gap = readVarint();
+            slot += gap >>> 1;
+            count = (gap & 1) != 0 ? 1 : readVarint();
+            unread = true;
+            return true;
+        }
+
+        /** Moves to the first slot at or after the target; false at the end of the list. */
+        boolean advanceTo(int target) {
+            while (slot < target) {
+                if (!advance()) return false;
+            }
+            return slot != Integer.MAX_VALUE;
+        }
+
+        /** The current slot's positions, ascending; read once per slot. */
+        int[] positions() {
+            int[] positions = new int[count];
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                position += readVarint();
+                positions[i] = position;
+            }
+            unread = false;
+            return positions;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[offset++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+
+    void clear() {
+        termIds.clear();
+        terms.clear();
+        sortedTerms.clear();
+        postings.clear();
+        masked.clear();
+        pending.clear();
+        lastSlot = -1;
+        liveSlots = 0;
+    }
+
+    /** Indexes the steps of a slot above any indexed; a lower slot is taken as an edit. */
+    void add(int slot, String steps) {
+        add(slot, words(steps));
+    }
+
+    /** Like {@link #add(int, String)}, with the steps already split by {@link #words}. */
+    void add(int slot, List<String> words) {
+        if (slot <= lastSlot) {
+            update(slot, words);
+            return;
+        }
+        int[] ids = termIds(words);
+        appendSlot(slot, ids);
+        lastSlot = slot;
+        liveSlots++;
+    }
+
+    /** Re-indexes the edited steps of an indexed slot. */
+    void update(int slot, String steps) {
+        update(slot, words(steps));
+    }
+
+    private void update(int slot, List<String> words) {
+        if (slot > lastSlot) {
+            add(slot, words);
+            return;
+        }
+        pending.put(slot, termIds(words));
+        masked.set(slot);
+        reencodeIfDue();
+    }
+
+    void remove(int slot) {
+        if (slot > lastSlot) return;
+        boolean wasPending = pending.remove(slot) != null;
+        if (wasPending || !masked.get(slot)) liveSlots--;
+        masked.set(slot);
+        reencodeIfDue();
+    }
+
+    /** Drops the spare room of the posting lists, once a bulk of slots has been added. */
+    void trim() {
+        for (Postings list : postings) {
+            if (list.bytes.length > list.length) list.bytes = Arrays.copyOf(list.bytes, list.length);
+        }
+    }
+
+    /** Bytes taken by the posting lists. */
+    long postingBytes() {
+        long total = 0;
+        for (Postings list : postings) {
+            total += list.length;
+        }
+        return total;
+    }
+
+    /** Words in the dictionary. */
+    int termCount() {
+        return terms.size();
+    }
+
+    /** The slots whose steps match the lowercased, trimmed query. */
+    BitSet search(String query) {
+        List<String> words = words(query);
+        BitSet matches = new BitSet();
+        if (words.isEmpty()) return matches;
+
+        int n = words.size();
+        int[] leading = new int[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            Integer id = termIds.get(words.get(i));
+            if (id == null) return matches;
+            leading[i] = id;
+        }
+        String last = words.get(n - 1);
+        BitSet lastIds = new BitSet();
+        for (int id : sortedTerms.subMap(last, last + Character.MAX_VALUE).values()) {
+            lastIds.set(id);
+        }
+        if (lastIds.isEmpty()) return matches;
+
+        // Slots read off the lists or checked for the phrase, reported once
+        long checked = pending.size();
+        if (n == 1) {
+            for (int id = lastIds.nextSetBit(0); id >= 0; id = lastIds.nextSetBit(id + 1)) {
+                Cursor cursor = new Cursor(postings.get(id));
+                while (cursor.advance()) {
+                    matches.set(cursor.slot);
+                    checked++;
+                }
+            }
+        } else {
+            checked += matchPhrases(leading, lastIds, matches);
+        }
+        matches.andNot(masked);
+
+        for (Map.Entry<Integer, int[]> entry : pending.entrySet()) {
+            if (containsPhrase(entry.getValue(), leading, lastIds)) matches.set(entry.getKey());
+        }
+        Diagnostics.STEP_SLOTS_CHECKED.add(checked);
+        return matches;
+    }
+
+    /**
+     * Whether the steps match the lowercased, trimmed query as a {@link #search}
+     * would, judged from the steps alone.
+     */
+    static boolean matches(String steps, String query) {
+        return snippet(steps, query, 0) != null;
+    }
+
+    /**
+     * The first match of the lowercased, trimmed query in the steps with about
+     * {@code context} characters on either side, or null if they do not match.
+     * Matches are found again in the text, so only the recipes shown need
+     * this; the index keeps no offsets.
+     */
+    static Snippet snippet(String steps, String query, int context) {
+        List<String> words = words(query);
+        if (words.isEmpty()) return null;
+        int n = words.size();
+        String last = words.get(n - 1);
+
+        // Start and end offsets of each word of the steps
+        IntArray starts = new IntArray();
+        IntArray ends = new IntArray();
+        List<String> stepWords = new ArrayList<>();
+        forEachWord(steps, (start, end) -> {
+            starts.add(start);
+            ends.add(end);
+            stepWords.add(steps.substring(start, end).toLowerCase(Locale.ROOT));
+        });
+
+        List<int[]> highlights = new ArrayList<>();
+        for (int p = 0; p + n <= stepWords.size(); p++) {
+            if (isPhraseAt(stepWords, p, words, last)) {
+                highlights.add(new int[] {starts.get(p), ends.get(p + n - 1)});
+                p += n - 1;
+            }
+        }
+        if (highlights.isEmpty()) return null;
+
+        int from = Math.max(0, highlights.get(0)[0] - context);
+        int to = Math.min(steps.length(), highlights.get(0)[1] + context);
+        // Widen to whole words
+        while (from > 0 && Character.isLetterOrDigit(steps.charAt(from - 1))) from--;
+        while (to < steps.length() && Character.isLetterOrDigit(steps.charAt(to))) to++;
+        List<int[]> shown = new ArrayList<>();
+        for (int[] highlight : highlights) {
+            if (highlight[1] > to) break;
+            shown.add(new int[] {highlight[0] - from, highlight[1] - from});
+        }
+        return new Snippet(steps.substring(from, to), from > 0, to < steps.length(), shown);
+    }
+
+    /** Part of a recipe's steps around a match, with the matches in it. */
+    static final class Snippet {
+        final String text;
+        final boolean cutBefore;
+        final boolean cutAfter;
+        // Start and end offsets in the text, in order
+        final List<int[]> highlights;
+
+        Snippet(String text, boolean cutBefore, boolean cutAfter, List<int[]> highlights) {
+            this.text = text;
+            this.cutBefore = cutBefore;
+            this.cutAfter = cutAfter;
+            this.highlights = highlights;
+        }
+    }
+
+    /** Splits text into lowercased runs of letters and digits. */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        forEachWord(text, (start, end) -> words.add(text.substring(start, end).toLowerCase(Locale.ROOT)));
+        return words;
+    }
+
+    private interface WordConsumer {
+        void accept(int start, int end);
+    }
+
+    private static void forEachWord(String text, WordConsumer consumer) {
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                consumer.accept(start, i);
+                start = -1;
+            }
+        }
+        if (start >= 0) consumer.accept(start, text.length());
+    }
+
+    private static boolean isPhraseAt(List<String> stepWords, int p, List<String> words, String last) {
+        int n = words.size();
+        for (int i = 0; i < n - 1; i++) {
+            if (!stepWords.get(p + i).equals(words.get(i))) return false;
+        }
+        return stepWords.get(p + n - 1).startsWith(last);
+    }
+
+    /**
+     * Walks the lists of the leading words together, checking positions where
+     * all share a slot; returns how many slots were checked.
+     */
+    private int matchPhrases(int[] leading, BitSet lastIds, BitSet matches) {
+        Cursor[] cursors = new Cursor[leading.length];
+        for (int i = 0; i < leading.length; i++) {
+            cursors[i] = new Cursor(postings.get(leading[i]));
+        }
+        List<Cursor> lastCursors = new ArrayList<>();
+        for (int id = lastIds.nextSetBit(0); id >= 0; id = lastIds.nextSetBit(id + 1)) {
+            Cursor cursor = new Cursor(postings.get(id));
+            if (cursor.advance()) lastCursors.add(cursor);
+        }
+
+        int checked = 0;
+        int target = 0;
+        while (true) {
+            // Leapfrog until every leading word is at the same slot
+            boolean aligned = false;
+            while (!aligned) {
+                aligned = true;
+                for (Cursor cursor : cursors) {
+                    if (!cursor.advanceTo(target)) return checked;
+                    if (cursor.slot > target) {
+                        target = cursor.slot;
+                        aligned = false;
+                    }
+                }
+            }
+
+            if (!masked.get(target)) {
+                checked++;
+                IntArray lastPositions = new IntArray();
+                for (Cursor cursor : lastCursors) {
+                    if (cursor.advanceTo(target) && cursor.slot == target) {
+                        for (int position : cursor.positions()) {
+                            lastPositions.add(position);
+                        }
+                    }
+                }
+                if (lastPositions.size > 0 && phraseAt(cursors, lastPositions)) matches.set(target);
+            }
+            target++;
+        }
+    }
+
+    /** Whether the aligned cursors' positions, then one of the last word's, are consecutive. */
+    private static boolean phraseAt(Cursor[] cursors, IntArray lastPositions) {
+        int[][] positions = new int[cursors.length][];
+        for (int i = 0; i < cursors.length; i++) {
+            positions[i] = cursors[i].positions();
+        }
+        int[] last = lastPositions.sorted();
+        for (int start : positions[0]) {
+            boolean found = true;
+            for (int i = 1; i < positions.length && found; i++) {
+                found = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (found && Arrays.binarySearch(last, start + positions.length) >= 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean containsPhrase(int[] ids, int[] leading, BitSet lastIds) {
+        int n = leading.length + 1;
+        for (int p = 0; p + n <= ids.length; p++) {
+            boolean found = true;
+            for (int i = 0; i < leading.length && found; i++) {
+                found = ids[p + i] == leading[i];
+            }
+            if (found && lastIds.get(ids[p + leading.length])) return true;
+        }
+        return false;
+    }
+
+    private int[] termIds(List<String> words) {
+        int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String word = words.get(i);
+            Integer id = termIds.get(word);
+            if (id == null) {
+                id = terms.size();
+                termIds.put(word, id);
+                terms.add(word);
+                sortedTerms.put(word, id);
+                postings.add(new Postings());
+            }
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /** Appends a slot's positions to the list of each word it uses. */
+    private void appendSlot(int slot, int[] ids) {
+        // Positions grouped by word: sort (word, position) pairs packed into longs
+        long[] pairs = new long[ids.length];
+        for (int position = 0; position < ids.length; position++) {
+            pairs[position] = (long) ids[position] << 32 | position;
+        }
+        Arrays.sort(pairs);
+        int[] positions = new int[ids.length];
+        int i = 0;
+        while (i < pairs.length) {
+            int id = (int) (pairs[i] >>> 32);
+            int count = 0;
+            while (i < pairs.length && (int) (pairs[i] >>> 32) == id) {
+                positions[count++] = (int) pairs[i++];
+            }
+            postings.get(id).append(slot, positions, count);
+        }
+    }
+
+    /**
+     * Once enough edits are pending, or masked slots outnumber live ones,
+     * writes every list again without the masked entries and with the pending
+     * slots in place.
+     */
+    private void reencodeIfDue() {
+        int maskedSlots = masked.cardinality();
+        if (pending.size() < MAX_PENDING && (maskedSlots < 1024 || maskedSlots <= liveSlots)) return;
+
+        // Pending slots' positions by word, in slot order
+        List<List<int[]>> pendingByTerm = new ArrayList<>(terms.size());
+        for (int id = 0; id < terms.size(); id++) {
+            pendingByTerm.add(null);
+        }
+        for (Map.Entry<Integer, int[]> entry : pending.entrySet()) {
+            int[] ids = entry.getValue();
+            Map<Integer, IntArray> positions = new HashMap<>();
+            for (int position = 0; position < ids.length; position++) {
+                positions.computeIfAbsent(ids[position], id -> new IntArray()).add(position);
+            }
+            for (Map.Entry<Integer, IntArray> word : positions.entrySet()) {
+                List<int[]> slotsOfWord = pendingByTerm.get(word.getKey());
+                if (slotsOfWord == null) pendingByTerm.set(word.getKey(), slotsOfWord = new ArrayList<>());
+                slotsOfWord.add(word.getValue().withFirst(entry.getKey()));
+            }
+        }
+
+        for (int id = 0; id < terms.size(); id++) {
+            Postings old = postings.get(id);
+            List<int[]> added = pendingByTerm.get(id);
+            if (old.length == 0 && added == null) continue;
+            Postings merged = new Postings();
+            Cursor cursor = new Cursor(old);
+            boolean more = cursor.advance();
+            int next = 0;
+            while (more || (added != null && next < added.size())) {
+                int addedSlot = added != null && next < added.size() ? added.get(next)[0] : Integer.MAX_VALUE;
+                if (more && cursor.slot < addedSlot) {
+                    int[] positions = cursor.positions();
+                    if (!masked.get(cursor.slot)) merged.append(cursor.slot, positions, positions.length);
+                    more = cursor.advance();
+                } else {
+                    int[] packed = added.get(next++);
+                    merged.append(packed[0], Arrays.copyOfRange(packed, 1, packed.length), packed.length - 1);
+                }
+            }
+            merged.bytes = Arrays.copyOf(merged.bytes, merged.length);
+            postings.set(id, merged);
+        }
+        masked.clear();
+        pending.clear();
+    }
+
+    static int writeVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[offset++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /** Growable list of ints. */
+    private static final class IntArray {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int[] sorted() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /** The given value followed by the values. */
+        int[] withFirst(int first) {
+            int[] result = new int[size + 1];
+            result[0] = first;
+            System.arraycopy(values, 0, result, 1, size);
+            return result;
+        }
+    }
+}
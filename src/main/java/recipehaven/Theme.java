@@ -0,0 +1,58 @@
+package recipehaven;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Font;
+import javax.swing.BorderFactory;
+import javax.swing.border.Border;
+import javax.swing.border.EmptyBorder;
+
+/**
+ * The look of the app: warm kitchen colors, fonts by role, borders and
+ * cursors. Every value is immutable and created once, so components share
+ * them instead of each building its own copies.
+ */
+final class Theme {
+    // Colors
+    static final Color CREAM = new Color(255, 250, 240);
+    static final Color TERRACOTTA = new Color(210, 105, 80);
+    static final Color SAGE = new Color(138, 154, 124);
+    static final Color WARM_WHITE = new Color(250, 248, 246);
+    static final Color DARK_BROWN = new Color(101, 67, 33);
+    static final Color LIGHT_ORANGE = new Color(255, 228, 196);
+    static final Color GOLD = new Color(255, 215, 0);
+    static final Color BLUE = new Color(100, 149, 237);
+    static final Color RED = new Color(220, 90, 90);
+    static final Color GREY = new Color(150, 150, 150);
+    static final Color LIGHT_GREY = new Color(200, 200, 200);
+
+    // Fonts
+    private static final String FAMILY = "Segoe UI";
+    static final Font TITLE = new Font(FAMILY, Font.BOLD, 32);
+    static final Font HEADING = new Font(FAMILY, Font.BOLD, 24);
+    static final Font CARD_TITLE = new Font(FAMILY, Font.BOLD, 20);
+    static final Font SECTION = new Font(FAMILY, Font.BOLD, 18);
+    static final Font LABEL = new Font(FAMILY, Font.BOLD, 14);
+    static final Font TEXT = new Font(FAMILY, Font.PLAIN, 14);
+    static final Font SMALL_TEXT = new Font(FAMILY, Font.PLAIN, 13);
+    static final Font SMALL = new Font(FAMILY, Font.PLAIN, 12);
+    static final Font STAR = new Font(FAMILY, Font.PLAIN, 24);
+    static final Font EMPTY_STATE = new Font(FAMILY, Font.ITALIC, 18);
+    static final Font SUBTITLE = new Font(FAMILY, Font.ITALIC, 16);
+    static final Font CATEGORY = new Font(FAMILY, Font.ITALIC, 14);
+
+    // Borders
+    static final Border WINDOW_PADDING = new EmptyBorder(15, 15, 15, 15);
+    static final Border DIALOG_PADDING = new EmptyBorder(20, 20, 20, 20);
+    static final Border NO_BORDER = BorderFactory.createEmptyBorder();
+    /** Gap below each card in the list. */
+    static final Border CARD_GAP = new EmptyBorder(0, 0, 10, 0);
+    static final Border CARD_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(LIGHT_ORANGE, 2),
+        new EmptyBorder(15, 15, 15, 15));
+
+    static final Cursor HAND = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+
+    private Theme() {
+    }
+}
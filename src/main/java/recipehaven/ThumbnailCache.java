@@ -0,0 +1,159 @@
+package recipehaven;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.SwingUtilities;
+
+/**
+ * Recipe photo thumbnails for the list, decoded and scaled on background
+ * threads and kept in a least-recently-used cache bounded by pixel bytes.
+ *
+ * {@link #get} never blocks: a thumbnail that is not cached yet is queued and
+ * the card paints a placeholder until the listener is told to repaint. The
+ * queue is served newest first and only the latest {@value #MAX_QUEUED}
+ * requests are kept, so while scrolling the rows on screen decode before rows
+ * that have already scrolled past. Only scaled thumbnails are held; photos are
+ * decoded straight to about twice the thumbnail size.
+ *
+ * Every method must be called on the EDT.
+ */
+class ThumbnailCache {
+    private static final int MAX_QUEUED = 64;
+
+    private final PhotoStore photos;
+    private final int size;
+    private final long maxBytes;
+    private final Runnable loaded;
+    private final ThreadPoolExecutor executor;
+
+    private final LinkedHashMap<String, BufferedImage> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private final LinkedHashMap<String, Load> loading = new LinkedHashMap<>();
+    // Photos that failed to decode; retried only after the photo changes
+    private final Set<String> failed = new HashSet<>();
+
+    /**
+     * @param size    width and height of the box thumbnails are scaled to fit
+     * @param loaded  called on the EDT each time a thumbnail becomes available
+     */
+    ThumbnailCache(PhotoStore photos, int size, long maxBytes, Runnable loaded) {
+        this.photos = photos;
+        this.size = size;
+        this.maxBytes = maxBytes;
+        this.loaded = loaded;
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        // Newest first: offer puts each request at the head of the queue
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingDeque<Runnable>() {
+                public boolean offer(Runnable r) {
+                    return offerFirst(r);
+                }
+            }, r -> {
+                Thread thread = new Thread(r, "thumbnail-loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The recipe's thumbnail, or null if it has no photo or the thumbnail is
+     * still loading, in which case it is queued.
+     */
+    BufferedImage get(String id) {
+        BufferedImage thumbnail = thumbnails.get(id);
+        if (thumbnail != null || !photos.hasPhoto(id) || loading.containsKey(id) || failed.contains(id)) {
+            return thumbnail;
+        }
+        Load load = new Load(id);
+        loading.put(id, load);
+        if (loading.size() > MAX_QUEUED) {
+            // Rows asked for longest ago have most likely scrolled out of view
+            Iterator<Load> oldest = loading.values().iterator();
+            oldest.next().cancel(false);
+            oldest.remove();
+        }
+        executor.execute(load);
+        return null;
+    }
+
+    /** Forgets the recipe's thumbnail after its photo changed or was removed. */
+    void invalidate(String id) {
+        BufferedImage removed = thumbnails.remove(id);
+        if (removed != null) bytes -= bytesOf(removed);
+        Load load = loading.remove(id);
+        if (load != null) load.cancel(true);
+        failed.remove(id);
+    }
+
+    int thumbnailSize() {
+        return size;
+    }
+
+    /**
+     * Caches the thumbnail, replacing one already cached: a load cancelled
+     * while running still finishes, and a later get may have queued another.
+     */
+    private void put(String id, BufferedImage thumbnail) {
+        BufferedImage previous = thumbnails.put(id, thumbnail);
+        if (previous != null) bytes -= bytesOf(previous);
+        bytes += bytesOf(thumbnail);
+        Iterator<BufferedImage> eldest = thumbnails.values().iterator();
+        while (bytes > maxBytes && thumbnails.size() > 1) {
+            bytes -= bytesOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long bytesOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /** Decodes one thumbnail and hands it to the EDT, unless cancelled first. */
+    private final class Load implements Runnable {
+        final String id;
+        private volatile boolean cancelled;
+        // Read on the EDT only
+        private boolean stale;
+
+        Load(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Drops the load if it has not started. One already running still
+         * caches its thumbnail, unless the photo it reads is stale.
+         */
+        void cancel(boolean stale) {
+            cancelled = true;
+            this.stale = stale;
+            executor.remove(this);
+        }
+
+        public void run() {
+            if (cancelled) return;
+            BufferedImage thumbnail;
+            try {
+                thumbnail = photos.read(id, size, size);
+                Diagnostics.THUMBNAILS_DECODED.increment();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                thumbnail = null;
+            }
+            BufferedImage result = thumbnail;
+            SwingUtilities.invokeLater(() -> {
+                loading.remove(id, this);
+                if (stale) return;
+                if (result == null) {
+                    failed.add(id);
+                    return;
+                }
+                put(id, result);
+                loaded.run();
+            });
+        }
+    }
+}
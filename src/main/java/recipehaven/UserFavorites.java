@@ -0,0 +1,91 @@
+package recipehaven;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Favorites kept per user in server mode, where several people share one book
+ * and the book's own favorites would be everyone's. Each user has a file of
+ * recipe ids, one per line, in a directory of their own.
+ *
+ * A user's favorites are an immutable set that every change replaces, so
+ * reading them takes no lock. Changes are written through to the user's file,
+ * which is renamed into place, so a failed write keeps the old favorites.
+ * Thread-safe.
+ */
+class UserFavorites {
+    private static final String SUFFIX = ".favorites";
+
+    private final Path directory;
+    private final ConcurrentMap<String, Set<String>> byUser = new ConcurrentHashMap<>();
+
+    UserFavorites(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Reads every user's favorites from the directory. */
+    void load() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(SUFFIX)) continue;
+                Set<String> ids = new HashSet<>();
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isEmpty()) ids.add(line);
+                }
+                byUser.put(PhotoStore.idOf(name.substring(0, name.length() - SUFFIX.length())),
+                    Collections.unmodifiableSet(ids));
+            }
+        }
+    }
+
+    /** The user's favorite recipe ids, which do not change afterwards. */
+    Set<String> get(String user) {
+        return byUser.getOrDefault(user, Collections.emptySet());
+    }
+
+    /** Marks or unmarks a recipe as one of the user's favorites. */
+    synchronized void setFavorite(String user, String id, boolean favorite) throws IOException {
+        Set<String> current = get(user);
+        if (current.contains(id) == favorite) return;
+        Set<String> next = new HashSet<>(current);
+        if (favorite) {
+            next.add(id);
+        } else {
+            next.remove(id);
+        }
+        write(user, next);
+        byUser.put(user, Collections.unmodifiableSet(next));
+    }
+
+    /** Drops a deleted recipe from every user's favorites. */
+    synchronized void forget(String id) throws IOException {
+        for (Map.Entry<String, Set<String>> user : byUser.entrySet()) {
+            if (user.getValue().contains(id)) setFavorite(user.getKey(), id, false);
+        }
+    }
+
+    private void write(String user, Set<String> ids) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(PhotoStore.fileName(user) + SUFFIX);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (String id : ids) {
+                    out.write(id);
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}